@@ -0,0 +1,62 @@
+package com.soundswapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding one second of mixer format audio with each sample compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark
+{
+    @Param({"MU_LAW", "IMA_ADPCM"})
+    public SampleCompression compression;
+
+    private ByteBuffer pcm;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp()
+    {
+        int frames = (int) SoundMixer.FORMAT.getFrameRate();
+        pcm = ByteBuffer.allocate(frames * SoundMixer.FORMAT.getFrameSize()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int frame = 0; frame < frames; frame++)
+        {
+            short sample = (short) (16000 * Math.sin(2 * Math.PI * 440 * frame / SoundMixer.FORMAT.getFrameRate()));
+            pcm.putShort(sample).putShort(sample);
+        }
+        pcm.flip();
+
+        encoded = ByteBuffer.wrap(compression.encode(pcm.duplicate()));
+    }
+
+    @Benchmark
+    public byte[] encode()
+    {
+        return compression.encode(pcm.duplicate());
+    }
+
+    @Benchmark
+    public byte[] decode()
+    {
+        return compression.decode(encoded.duplicate());
+    }
+}
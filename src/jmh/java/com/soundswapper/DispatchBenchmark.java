@@ -0,0 +1,110 @@
+package com.soundswapper;
+
+import net.runelite.api.events.AreaSoundEffectPlayed;
+import net.runelite.api.events.SoundEffectPlayed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of handling one sound event with blacklists, whitelists and native swaps of the given size.
+ * About half of the events hit a rule. Every event is a new object like in the client, so the
+ * allocation rate includes it, as well as the argument boxing of the proxy client for native swaps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark
+{
+    private static final int EVENTS = 4096;
+
+    @Param({"10", "100", "1000"})
+    public int rules;
+
+    private PluginFixture fixture;
+    private SoundSwapperPlugin plugin;
+
+    private final int[] soundIds = new int[EVENTS];
+    private final int[] distances = new int[EVENTS];
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Map<String, Object> config = new HashMap<>();
+        config.put("blacklistedSounds", ids(0, rules));
+        config.put("blacklistedAreaSounds", ids(0, rules));
+        config.put("whitelistSounds", ids(rules / 2, rules / 4));
+        config.put("whitelistAreaSounds", ids(rules / 2, rules / 4));
+        config.put("nativeSoundIDSwapEnable", true);
+        config.put("nativeSoundIDsToReplace", ids(rules, Math.max(1, rules / 10)));
+        config.put("nativeSoundIDReplacements", ids(2 * rules, Math.max(1, rules / 10)));
+
+        fixture = new PluginFixture(config, 52, 52);
+        plugin = fixture.getPlugin();
+        plugin.publishSnapshot();
+
+        Random random = new Random(42);
+        for (int i = 0; i < EVENTS; i++)
+        {
+            soundIds[i] = random.nextInt(2 * rules);
+            distances[i] = random.nextInt(20);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        fixture.close();
+    }
+
+    @Benchmark
+    public boolean soundEffect()
+    {
+        SoundEffectPlayed soundEffect = new SoundEffectPlayed();
+        soundEffect.setSoundId(soundIds[next++ & (EVENTS - 1)]);
+        plugin.onSoundEffectPlayed(soundEffect);
+        return soundEffect.isConsumed();
+    }
+
+    @Benchmark
+    public boolean areaSoundEffect()
+    {
+        int i = next++ & (EVENTS - 1);
+        AreaSoundEffectPlayed areaSoundEffect = new AreaSoundEffectPlayed();
+        areaSoundEffect.setSoundId(soundIds[i]);
+        areaSoundEffect.setSceneX(52 + distances[i]);
+        areaSoundEffect.setSceneY(52);
+        areaSoundEffect.setRange(10);
+        plugin.onAreaSoundEffectPlayed(areaSoundEffect);
+        return areaSoundEffect.isConsumed();
+    }
+
+    private static String ids(int first, int count)
+    {
+        StringJoiner ids = new StringJoiner(",");
+        for (int id = first; id < first + count; id++)
+        {
+            ids.add(String.valueOf(id));
+        }
+        return ids.toString();
+    }
+}
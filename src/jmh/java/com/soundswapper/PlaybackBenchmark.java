@@ -0,0 +1,88 @@
+package com.soundswapper;
+
+import net.runelite.api.events.SoundEffectPlayed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from a sound event with a custom sound to the sound being handed to the mixer, with the
+ * mixer writing to a {@link NullAudioSink} either paced like a sound card or as fast as it mixes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaybackBenchmark
+{
+    private static final int SOUND_ID = 1000;
+
+    @Param({"true", "false"})
+    public boolean realTime;
+
+    @Param({"NONE", "MU_LAW", "IMA_ADPCM"})
+    public SampleCompression compression;
+
+    private PluginFixture fixture;
+    private SoundSwapperPlugin plugin;
+    private SoundMixer mixer;
+    private Sound sound;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Map<String, Object> config = new HashMap<>();
+        config.put("soundEffects", true);
+        config.put("customSounds", String.valueOf(SOUND_ID));
+        config.put("sampleCompression", compression);
+
+        fixture = new PluginFixture(config, 52, 52);
+        SyntheticSounds.write(fixture.getDirectory(), String.valueOf(SOUND_ID), SyntheticSounds.CD_STEREO, 1f);
+
+        plugin = fixture.getPlugin();
+        fixture.startMixer(new NullAudioSink(realTime));
+        fixture.loadSounds(10_000);
+
+        SoundTable table = plugin.getSnapshot().getSoundTable();
+        sound = table.getSound(table.find(SOUND_ID));
+        mixer = new SoundMixer();
+        mixer.start(new NullAudioSink(realTime));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        mixer.stop();
+        fixture.close();
+    }
+
+    @Benchmark
+    public boolean customSoundEvent()
+    {
+        SoundEffectPlayed soundEffect = new SoundEffectPlayed();
+        soundEffect.setSoundId(SOUND_ID);
+        plugin.onSoundEffectPlayed(soundEffect);
+        return soundEffect.isConsumed();
+    }
+
+    @Benchmark
+    public boolean mixerPlay()
+    {
+        return mixer.play(sound, 1f);
+    }
+}
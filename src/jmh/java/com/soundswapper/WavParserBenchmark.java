@@ -0,0 +1,77 @@
+package com.soundswapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading a wav from disk without the sample cache, reading it with {@link WavFile} or through
+ * AudioSystem as before. Mu-law has no parser support and shows the cost of falling back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WavParserBenchmark
+{
+    @Param({"CD_STEREO", "VOICE_MONO", "STUDIO_24_BIT", "RETRO_8_BIT", "TELEPHONE_MU_LAW"})
+    public String format;
+
+    @Param({"true", "false"})
+    public boolean wavParser;
+
+    private File directory;
+    private SoundLoader loader;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        directory = Files.createTempDirectory("soundswapper").toFile();
+        SyntheticSounds.write(directory, "1", SyntheticSounds.format(format), 2f);
+
+        loader = new SoundLoader(directory, wavParser, false);
+        loader.setCache(false, SampleCache.DEFAULT_MAX_MB, false);
+        if (loader.load("1") == null)
+        {
+            throw new IllegalStateException("Unable to load the " + format + " sound");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        if (!loader.shutdown(10, TimeUnit.SECONDS))
+        {
+            throw new IllegalStateException("The loader threads did not stop");
+        }
+
+        try (Stream<Path> walk = Files.walk(directory.toPath()))
+        {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public Sound load()
+    {
+        return loader.load("1");
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.AmbientSoundEffect;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Removes consumed ambient sounds from the client's live ambient list and keeps them aside, so a
+ * change to the rules can put them back without reloading the scene.
+ * Only used on the client thread.
+ */
+@Slf4j
+class AmbientSoundFilter
+{
+    private final List<AmbientSoundEffect> removed = new ArrayList<>();
+
+    /**
+     * Brings the ambient list in line with the settings, restoring sounds that are no longer consumed.
+     *
+     * @return whether any sound was taken out, the client keeps playing the ones it already started
+     */
+    boolean apply(Collection<AmbientSoundEffect> ambientSounds, ConfigSnapshot settings)
+    {
+        removed.removeIf(ambientSound ->
+        {
+            if (isConsumed(settings, ambientSound.getSoundEffectId()))
+            {
+                return false;
+            }
+
+            ambientSounds.add(ambientSound);
+            return true;
+        });
+
+        boolean takenOut = ambientSounds.removeIf(ambientSound ->
+        {
+            if (!isConsumed(settings, ambientSound.getSoundEffectId()))
+            {
+                return false;
+            }
+
+            removed.add(ambientSound);
+            return true;
+        });
+
+        log.debug("Consuming {} ambient sounds", removed.size());
+        return takenOut;
+    }
+
+    /**
+     * Forgets the removed sounds, the client builds a new ambient list for every scene it loads.
+     */
+    void reset()
+    {
+        removed.clear();
+    }
+
+    private static boolean isConsumed(ConfigSnapshot settings, int soundId)
+    {
+        SoundTable table = settings.getAmbientSoundTable();
+        int flags = table.getFlags(table.find(soundId));
+
+        if ((flags & SoundTable.WHITELISTED) != 0)
+        {
+            return false;
+        }
+
+        return settings.isConsumeAmbientSounds() || (flags & SoundTable.BLACKLISTED) != 0;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Where the mixer writes its output: a sound card line in the client, or a stand in when running
+ * without audio hardware.
+ */
+interface AudioSink
+{
+    void open(AudioFormat format, int bufferSize) throws LineUnavailableException;
+
+    /**
+     * Blocks until the bytes are queued for playback, which paces the mixer to real time.
+     */
+    void write(byte[] bytes, int offset, int length);
+
+    void close();
+
+    static AudioSink line()
+    {
+        return new LineSink();
+    }
+
+    final class LineSink implements AudioSink
+    {
+        private SourceDataLine line;
+
+        private LineSink()
+        {
+        }
+
+        @Override
+        public void open(AudioFormat format, int bufferSize) throws LineUnavailableException
+        {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferSize);
+            line.start();
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+        {
+            line.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close()
+        {
+            line.stop();
+            line.flush();
+            line.close();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.FloatControl;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.LineUnavailableException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a set of opened clips for every custom sound so that playing a sound only rewinds and
+ * restarts a clip instead of acquiring a line and copying the samples each time.
+ */
+@Slf4j
+class ClipPool
+{
+    static final int DEFAULT_POLYPHONY = 4;
+
+    private final ClipFactory clipFactory;
+
+    private final Map<Sound, Voices> voices = new IdentityHashMap<>();
+    // How many library entries hold each sound, ids with identical files share one sound
+    private final Map<Sound, Integer> holders = new IdentityHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    private int polyphony = DEFAULT_POLYPHONY;
+
+    ClipPool()
+    {
+        this(ClipPool::open);
+    }
+
+    /**
+     * @param clipFactory opens the clips, lines from AudioSystem unless running without audio hardware
+     */
+    ClipPool(ClipFactory clipFactory)
+    {
+        this.clipFactory = clipFactory;
+    }
+
+    /**
+     * Plays the sound on an idle clip, opening a new one if every clip is busy and the sound has fewer
+     * than the polyphony limit. When the limit is reached the clip that started first is restarted.
+     *
+     * @param gain linear gain, as given by {@link SoundMixer#gain(int)}
+     */
+    synchronized void play(Sound sound, float gain) throws LineUnavailableException
+    {
+        Voices pool = voices.computeIfAbsent(sound, s -> new Voices(polyphony));
+        long now = System.nanoTime();
+
+        int index = pool.findIdle(now);
+        if (index != -1)
+        {
+            hits.incrementAndGet();
+        }
+        else if ((index = pool.findEmpty()) != -1)
+        {
+            misses.incrementAndGet();
+            pool.clips[index] = clipFactory.open(sound);
+        }
+        else
+        {
+            exhausted.incrementAndGet();
+            index = pool.findOldest();
+            pool.clips[index].stop();
+        }
+
+        Clip clip = pool.clips[index];
+        setGain(clip, gain);
+        clip.setFramePosition(0);
+        clip.start();
+
+        pool.busyUntil[index] = now + clip.getMicrosecondLength() * 1000L;
+    }
+
+    /**
+     * Opens the first clip of a sound ahead of its first play. Called off the client thread when
+     * the sound is loaded, so the first play does not have to acquire a line either.
+     */
+    void prepare(Sound sound)
+    {
+        synchronized (this)
+        {
+            if (voices.containsKey(sound))
+            {
+                return;
+            }
+        }
+
+        Clip clip;
+        try
+        {
+            clip = clipFactory.open(sound);
+        }
+        catch (LineUnavailableException | IllegalArgumentException e)
+        {
+            log.debug("Unable to open a clip ahead of play", e);
+            return;
+        }
+
+        synchronized (this)
+        {
+            Voices pool = voices.computeIfAbsent(sound, s -> new Voices(polyphony));
+            int index = pool.findEmpty();
+            if (index == -1)
+            {
+                clip.close();
+            }
+            else
+            {
+                pool.clips[index] = clip;
+            }
+        }
+    }
+
+    /**
+     * Counts one more holder of the sound, its clips stay open until every holder has released it.
+     */
+    synchronized void retain(Sound sound)
+    {
+        holders.merge(sound, 1, Integer::sum);
+    }
+
+    /**
+     * Releases one hold on the sound and closes its clips once it is no longer in use, a clip that is
+     * still playing is closed when it finishes.
+     */
+    synchronized void release(Sound sound)
+    {
+        Integer count = holders.get(sound);
+        if (count != null && count > 1)
+        {
+            holders.put(sound, count - 1);
+            return;
+        }
+
+        holders.remove(sound);
+        Voices pool = voices.remove(sound);
+        if (pool != null)
+        {
+            pool.retire();
+        }
+    }
+
+    synchronized void setPolyphony(int polyphony)
+    {
+        if (this.polyphony != polyphony)
+        {
+            this.polyphony = Math.max(1, polyphony);
+            // Pools of the new size are opened on the next play, the sounds still playing finish first
+            voices.values().forEach(Voices::retire);
+            voices.clear();
+        }
+    }
+
+    synchronized void close()
+    {
+        voices.values().forEach(Voices::close);
+        voices.clear();
+        holders.clear();
+    }
+
+    long getHits()
+    {
+        return hits.get();
+    }
+
+    long getMisses()
+    {
+        return misses.get();
+    }
+
+    long getExhausted()
+    {
+        return exhausted.get();
+    }
+
+    private static Clip open(Sound sound) throws LineUnavailableException
+    {
+        Clip clip = AudioSystem.getClip();
+        byte[] bytes = sound.copyBytes();
+        clip.open(sound.getFormat(), bytes, 0, bytes.length);
+        return clip;
+    }
+
+    private static void setGain(Clip clip, float gain)
+    {
+        if (!clip.isControlSupported(FloatControl.Type.MASTER_GAIN))
+        {
+            return;
+        }
+
+        FloatControl control = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
+        float decibels = gain > 0 ? (float) (20 * Math.log10(gain)) : control.getMinimum();
+        control.setValue(Math.max(control.getMinimum(), Math.min(control.getMaximum(), decibels)));
+    }
+
+    /**
+     * Opens a clip holding the samples of a sound.
+     */
+    interface ClipFactory
+    {
+        Clip open(Sound sound) throws LineUnavailableException;
+    }
+
+    private static final class Voices
+    {
+        private final Clip[] clips;
+        private final long[] busyUntil;
+
+        private Voices(int polyphony)
+        {
+            clips = new Clip[polyphony];
+            busyUntil = new long[polyphony];
+        }
+
+        private int findIdle(long now)
+        {
+            for (int i = 0; i < clips.length; i++)
+            {
+                if (clips[i] != null && busyUntil[i] - now <= 0)
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int findEmpty()
+        {
+            for (int i = 0; i < clips.length; i++)
+            {
+                if (clips[i] == null)
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int findOldest()
+        {
+            int oldest = 0;
+            for (int i = 1; i < clips.length; i++)
+            {
+                if (busyUntil[i] - busyUntil[oldest] < 0)
+                {
+                    oldest = i;
+                }
+            }
+            return oldest;
+        }
+
+        private void close()
+        {
+            for (Clip clip : clips)
+            {
+                if (clip != null)
+                {
+                    clip.close();
+                }
+            }
+        }
+
+        /**
+         * Closes the idle clips now and the playing ones once they stop.
+         */
+        private void retire()
+        {
+            for (Clip clip : clips)
+            {
+                if (clip == null)
+                {
+                    continue;
+                }
+
+                if (clip.isRunning())
+                {
+                    clip.addLineListener(event ->
+                    {
+                        if (event.getType() == LineEvent.Type.STOP)
+                        {
+                            event.getLine().close();
+                        }
+                    });
+
+                    // Unless it stopped before the listener was added
+                    if (clip.isRunning())
+                    {
+                        continue;
+                    }
+                }
+
+                clip.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.SoundEffectVolume;
+import net.runelite.client.util.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable view of every setting the event handlers need. A new snapshot is published whenever the
+ * config or the loaded sounds change, so a single event always sees one consistent set of rules.
+ */
+@Slf4j
+final class ConfigSnapshot
+{
+    static final ConfigSnapshot EMPTY = new ConfigSnapshot();
+
+    private final boolean soundEffects;
+    private final boolean consumeSoundEffects;
+    private final boolean areaSoundEffects;
+    private final boolean consumeAreaSounds;
+    private final boolean consumeAmbientSounds;
+    private final boolean nativeSoundIDSwapEnable;
+    private final boolean debugSoundEffects;
+    private final boolean showMetrics;
+    private final int nativeSwapVolume;
+    private final SoundTable soundTable;
+    private final SoundTable areaSoundTable;
+    private final SoundTable ambientSoundTable;
+
+    private ConfigSnapshot()
+    {
+        soundEffects = false;
+        consumeSoundEffects = false;
+        areaSoundEffects = false;
+        consumeAreaSounds = false;
+        consumeAmbientSounds = false;
+        nativeSoundIDSwapEnable = false;
+        debugSoundEffects = false;
+        showMetrics = false;
+        nativeSwapVolume = -1;
+        soundTable = SoundTable.EMPTY;
+        areaSoundTable = SoundTable.EMPTY;
+        ambientSoundTable = SoundTable.EMPTY;
+    }
+
+    private ConfigSnapshot(SoundSwapperConfig config, SoundLibrary customSounds, SoundLibrary customAreaSounds)
+    {
+        soundEffects = config.soundEffects();
+        consumeSoundEffects = config.consumeSoundEffects();
+        areaSoundEffects = config.areaSoundEffects();
+        consumeAreaSounds = config.consumeAreaSounds();
+        consumeAmbientSounds = config.consumeAmbientSounds();
+        nativeSoundIDSwapEnable = config.nativeSoundIDSwapEnable();
+        debugSoundEffects = config.debugSoundEffects();
+        showMetrics = config.showMetrics();
+        nativeSwapVolume = config.enableCustomSoundsVolume() ? config.customSoundsVolume() * SoundEffectVolume.HIGH / 100 : -1;
+
+        List<Integer> nativeSoundIDsToSwap = getIds(config.nativeSoundIDsToReplace());
+        List<Integer> nativeSoundIDReplacements = getIds(config.nativeSoundIDReplacements());
+
+        SoundTable.Builder sounds = new SoundTable.Builder()
+                .nativeSwaps(nativeSoundIDsToSwap, nativeSoundIDReplacements)
+                .flagAll(getIds(config.blacklistedSounds()), SoundTable.BLACKLISTED)
+                .flagAll(getIds(config.whitelistSounds()), SoundTable.WHITELISTED);
+
+        int volume = config.enableCustomSoundsVolume() ? config.customSoundsVolume() : -1;
+        customSounds.addTo(sounds, volume);
+
+        SoundTable.Builder areaSounds = new SoundTable.Builder()
+                .nativeSwaps(nativeSoundIDsToSwap, nativeSoundIDReplacements)
+                .flagAll(getIds(config.blacklistedAreaSounds()), SoundTable.BLACKLISTED)
+                .flagAll(getIds(config.whitelistAreaSounds()), SoundTable.WHITELISTED);
+
+        int areaVolume = config.enableCustomAreaSoundsVolume() ? config.customAreaSoundsVolume() : -1;
+        customAreaSounds.addTo(areaSounds, areaVolume);
+
+        soundTable = sounds.build();
+        areaSoundTable = areaSounds.build();
+        ambientSoundTable = new SoundTable.Builder()
+                .flagAll(getIds(config.blacklistedAmbientSounds()), SoundTable.BLACKLISTED)
+                .flagAll(getIds(config.whitelistAmbientSounds()), SoundTable.WHITELISTED)
+                .build();
+    }
+
+    static ConfigSnapshot of(SoundSwapperConfig config, SoundLibrary customSounds, SoundLibrary customAreaSounds)
+    {
+        return new ConfigSnapshot(config, customSounds, customAreaSounds);
+    }
+
+    static List<Integer> getIds(String configText)
+    {
+        if (configText == null || configText.isEmpty())
+        {
+            return List.of();
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        for (String s : Text.fromCSV(configText))
+        {
+            try
+            {
+                int id = Integer.parseInt(s);
+                ids.add(id);
+            }
+            catch (NumberFormatException e)
+            {
+                log.warn("Invalid id when parsing {}: {}", configText, s);
+            }
+        }
+
+        return ids;
+    }
+
+    boolean isSoundEffects()
+    {
+        return soundEffects;
+    }
+
+    boolean isConsumeSoundEffects()
+    {
+        return consumeSoundEffects;
+    }
+
+    boolean isAreaSoundEffects()
+    {
+        return areaSoundEffects;
+    }
+
+    boolean isConsumeAreaSounds()
+    {
+        return consumeAreaSounds;
+    }
+
+    boolean isConsumeAmbientSounds()
+    {
+        return consumeAmbientSounds;
+    }
+
+    boolean isNativeSoundIDSwapEnable()
+    {
+        return nativeSoundIDSwapEnable;
+    }
+
+    boolean isDebugSoundEffects()
+    {
+        return debugSoundEffects;
+    }
+
+    boolean isShowMetrics()
+    {
+        return showMetrics;
+    }
+
+    /**
+     * @return the volume native swaps are played at, or -1 to use the player's own volume setting
+     */
+    int getNativeSwapVolume()
+    {
+        return nativeSwapVolume;
+    }
+
+    SoundTable getSoundTable()
+    {
+        return soundTable;
+    }
+
+    SoundTable getAreaSoundTable()
+    {
+        return areaSoundTable;
+    }
+
+    SoundTable getAmbientSoundTable()
+    {
+        return ambientSoundTable;
+    }
+}
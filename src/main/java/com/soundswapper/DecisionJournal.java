@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size ring of the decisions the plugin made for each sound event, written by the client
+ * thread and read without locking by the debug overlay and the metrics. Readers that fall behind
+ * by more than the capacity skip the entries that were overwritten.
+ */
+class DecisionJournal
+{
+    static final int DEFAULT_CAPACITY = 1024;
+
+    static final int SOUND_EFFECT = 0;
+    static final int AREA_SOUND_EFFECT = 1;
+
+    static final int ALLOWED = 0;
+    static final int CONSUMED = 1;
+    static final int BLACKLISTED = 2;
+    static final int WHITELISTED = 3;
+    static final int CUSTOM = 4;
+    static final int SWAPPED = 5;
+    // A custom area sound consumed without playing because its source was out of range
+    static final int CULLED = 6;
+
+    private final int mask;
+
+    // Each slot holds the index of the entry written to it, or -1 while it is being rewritten
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray decisions;
+    private final AtomicLongArray timestamps;
+    private final AtomicLong written = new AtomicLong();
+
+    DecisionJournal(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        decisions = new AtomicLongArray(size);
+        timestamps = new AtomicLongArray(size);
+
+        for (int i = 0; i < size; i++)
+        {
+            sequences.set(i, -1);
+        }
+    }
+
+    /**
+     * Appends a decision. Must only be called from one thread.
+     */
+    void record(int soundId, int type, int action, boolean inRange)
+    {
+        long index = written.get();
+        int slot = (int) index & mask;
+
+        sequences.set(slot, -1);
+        decisions.lazySet(slot, (long) soundId << 32 | type << 16 | action << 8 | (inRange ? 1 : 0));
+        timestamps.lazySet(slot, System.nanoTime());
+        sequences.set(slot, index);
+        written.lazySet(index + 1);
+    }
+
+    /**
+     * @return the number of decisions recorded so far, the index the next one will be written at
+     */
+    long getWritten()
+    {
+        return written.get();
+    }
+
+    int capacity()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * Copies a decision into the entry.
+     *
+     * @return false if the decision has not been written yet or was already overwritten
+     */
+    boolean read(long index, Entry entry)
+    {
+        int slot = (int) index & mask;
+        if (sequences.get(slot) != index)
+        {
+            return false;
+        }
+
+        long decision = decisions.get(slot);
+        long timestamp = timestamps.get(slot);
+        if (sequences.get(slot) != index)
+        {
+            return false;
+        }
+
+        entry.soundId = (int) (decision >>> 32);
+        entry.type = (int) (decision >> 16) & 0xff;
+        entry.action = (int) (decision >> 8) & 0xff;
+        entry.inRange = (decision & 1) != 0;
+        entry.timestamp = timestamp;
+        return true;
+    }
+
+    static final class Entry
+    {
+        int soundId;
+        int type;
+        int action;
+        boolean inRange;
+        long timestamp;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LayoutableRenderableEntity;
+import net.runelite.client.ui.overlay.components.LineComponent;
+
+import javax.inject.Inject;
+import java.awt.*;
+import java.util.List;
+
+class MetricsOverlay extends OverlayPanel
+{
+    private static final long REFRESH_NANOS = 1_000_000_000L;
+    private static final int TOP_SOUNDS = 5;
+
+    private final SoundSwapperPlugin plugin;
+
+    private long refreshed;
+
+    @Inject
+    MetricsOverlay(SoundSwapperPlugin plugin)
+    {
+        this.plugin = plugin;
+
+        setClearChildren(false);
+        setPosition(OverlayPosition.TOP_RIGHT);
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics)
+    {
+        if (!plugin.getSnapshot().isShowMetrics())
+        {
+            return null;
+        }
+
+        // The lines are only rebuilt once a second so showing the metrics barely affects them
+        long now = System.nanoTime();
+        List<LayoutableRenderableEntity> children = panelComponent.getChildren();
+        if (children.isEmpty() || now - refreshed > REFRESH_NANOS)
+        {
+            refreshed = now;
+            children.clear();
+            addLines(children);
+        }
+
+        return super.render(graphics);
+    }
+
+    private void addLines(List<LayoutableRenderableEntity> children)
+    {
+        SoundMetrics metrics = plugin.getMetrics();
+
+        children.add(LineComponent.builder()
+                .left("Sound Swapper")
+                .leftColor(Color.CYAN)
+                .build());
+        children.add(line("Sounds", SoundMetrics.summarize(metrics.getSoundEffectDispatch())));
+        children.add(line("Area sounds", SoundMetrics.summarize(metrics.getAreaSoundDispatch())));
+        children.add(line("Start", SoundMetrics.summarize(metrics.getPlayStart())));
+        children.add(line("Load", SoundMetrics.summarize(plugin.getLoadTimes())));
+        children.add(line("Voices", String.valueOf(plugin.getActiveVoices())));
+        children.add(line("Line failures", String.valueOf(metrics.getLineFailures())));
+
+        int[] soundIds = metrics.getSoundIds();
+        for (int i = 0; i < Math.min(TOP_SOUNDS, soundIds.length); i++)
+        {
+            int soundId = soundIds[i];
+            children.add(line(String.valueOf(soundId), "P " + metrics.getCount(soundId, SoundMetrics.PLAYED)
+                    + " C " + metrics.getCount(soundId, SoundMetrics.CONSUMED)
+                    + " S " + metrics.getCount(soundId, SoundMetrics.SWAPPED)
+                    + " X " + metrics.getCount(soundId, SoundMetrics.CULLED)));
+        }
+    }
+
+    private static LineComponent line(String left, String right)
+    {
+        return LineComponent.builder()
+                .left(left)
+                .right(right)
+                .build();
+    }
+}
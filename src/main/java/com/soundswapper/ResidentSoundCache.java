@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Sounds loaded on first play when lazy loading is enabled, kept in least recently used order
+ * and evicted once their samples take more than the memory budget.
+ */
+@Slf4j
+class ResidentSoundCache
+{
+    static final int DEFAULT_BUDGET_MB = 256;
+
+    private final SoundLoader loader;
+    private final Consumer<Sound> onAdmit;
+    private final Consumer<Sound> onEvict;
+
+    private final LinkedHashMap<String, Sound> resident = new LinkedHashMap<>(16, 0.75f, true);
+    // Names with identical files share one sound, its samples are counted and evicted once
+    private final Map<Sound, Integer> names = new IdentityHashMap<>();
+    private final Map<String, CompletableFuture<Sound>> loading = new HashMap<>();
+    // The latest request of each loading sound, the one that plays once it is loaded
+    private final Map<String, Consumer<Sound>> pending = new HashMap<>();
+
+    private long residentBytes;
+    private long budgetBytes = DEFAULT_BUDGET_MB * 1024L * 1024L;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param onAdmit called with every sound that becomes resident
+     * @param onEvict called with every sound dropped from the cache once no name uses it anymore
+     */
+    ResidentSoundCache(SoundLoader loader, Consumer<Sound> onAdmit, Consumer<Sound> onEvict)
+    {
+        this.loader = loader;
+        this.onAdmit = onAdmit;
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * @return the sound if it is loaded, marking it as the most recently used
+     */
+    synchronized Sound get(String name)
+    {
+        Sound sound = resident.get(name);
+        if (sound != null)
+        {
+            hits++;
+        }
+        return sound;
+    }
+
+    /**
+     * Loads the sound in the background if it is not already loading and passes it to the callback
+     * once it is ready. Of the requests made while the sound loads only the latest callback is run,
+     * so a sound triggered repeatedly does not start several times at once. The callback is not run
+     * if the sound cannot be loaded.
+     */
+    void request(String name, Consumer<Sound> onReady)
+    {
+        Sound sound;
+        CompletableFuture<Sound> started = null;
+        synchronized (this)
+        {
+            sound = resident.get(name);
+            if (sound != null)
+            {
+                hits++;
+            }
+            else
+            {
+                misses++;
+                pending.put(name, onReady);
+                if (!loading.containsKey(name))
+                {
+                    started = loader.loadAsync(name);
+                    loading.put(name, started);
+                }
+            }
+        }
+
+        if (sound != null)
+        {
+            onReady.accept(sound);
+        }
+        else if (started != null)
+        {
+            // Registered before admit is attached, a load that already finished runs admit right away
+            CompletableFuture<Sound> load = started;
+            load.whenComplete((loaded, e) ->
+            {
+                Consumer<Sound> play = admit(name, load, e == null ? loaded : null);
+                if (play != null)
+                {
+                    play.accept(loaded);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the loaded copy of a sound file so that it is loaded again on its next play.
+     */
+    synchronized void invalidate(String name)
+    {
+        loading.remove(name);
+        pending.remove(name);
+        Sound sound = resident.remove(name);
+        if (sound != null)
+        {
+            release(sound);
+        }
+    }
+
+    synchronized void clear()
+    {
+        loading.clear();
+        pending.clear();
+        names.keySet().forEach(onEvict);
+        names.clear();
+        resident.clear();
+        residentBytes = 0;
+    }
+
+    synchronized void setBudget(long budgetBytes)
+    {
+        this.budgetBytes = budgetBytes;
+        evict();
+    }
+
+    synchronized long getResidentBytes()
+    {
+        return residentBytes;
+    }
+
+    synchronized int getResidentCount()
+    {
+        return resident.size();
+    }
+
+    synchronized long getHits()
+    {
+        return hits;
+    }
+
+    synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * @return the callback of the latest request for the sound, or null if there is nothing to play
+     */
+    private synchronized Consumer<Sound> admit(String name, CompletableFuture<Sound> load, Sound sound)
+    {
+        // A reload was requested while this load was running, leave the newer load to fill the cache
+        if (loading.get(name) != load)
+        {
+            return null;
+        }
+
+        loading.remove(name);
+        Consumer<Sound> play = pending.remove(name);
+        if (sound == null)
+        {
+            return null;
+        }
+
+        if (names.merge(sound, 1, Integer::sum) == 1)
+        {
+            residentBytes += sound.getNumBytes();
+            onAdmit.accept(sound);
+        }
+
+        Sound previous = resident.put(name, sound);
+        if (previous != null)
+        {
+            release(previous);
+        }
+
+        evict();
+        return play;
+    }
+
+    private void release(Sound sound)
+    {
+        int count = names.get(sound);
+        if (count > 1)
+        {
+            names.put(sound, count - 1);
+            return;
+        }
+
+        names.remove(sound);
+        residentBytes -= sound.getNumBytes();
+        onEvict.accept(sound);
+    }
+
+    private void evict()
+    {
+        // Always keep the most recently used sound, even if it alone is larger than the budget
+        Iterator<Sound> it = resident.values().iterator();
+        while (residentBytes > budgetBytes && resident.size() > 1)
+        {
+            Sound sound = it.next();
+            it.remove();
+            evictions++;
+            release(sound);
+        }
+
+        log.debug("{} sounds resident using {} of {} bytes", resident.size(), residentBytes, budgetBytes);
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk cache of decoded custom sounds. Each sound file is stored already decoded so that
+ * later starts can map the samples instead of parsing the wav again. Entries are keyed by the
+ * source file's name, size, modified time and a hash of its contents.
+ * <p>
+ * Every client on the computer uses the same cache folder. Sample files are written once and
+ * never modified, and the index is merged and written under a file lock, so clients can map the
+ * same samples at the same time.
+ */
+@Slf4j
+class SampleCache
+{
+    static final int DEFAULT_MAX_MB = 512;
+
+    private static final String INDEX_FILE = "index.txt";
+    private static final String INDEX_HEADER = "SoundSwapper sample cache 2";
+    private static final String SAMPLE_EXTENSION = ".pcm";
+    private static final int SAMPLE_MAGIC = 0x53535043;
+    private static final int SAMPLE_VERSION = 1;
+    private static final String LOCK_FILE = "cache.lock";
+    private static final long SAVE_DELAY_MS = 1000;
+    // Another client may have written a sample file that its index does not list yet
+    private static final long UNLISTED_GRACE_MS = 60_000;
+
+    private final File directory;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private boolean enabled = true;
+    private boolean indexLoaded;
+    private boolean saveScheduled;
+    private long maxBytes = DEFAULT_MAX_MB * 1024L * 1024L;
+
+    SampleCache(File directory, ScheduledExecutorService scheduler)
+    {
+        this.directory = directory;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * A disabled cache never saves its index or evicts, the folder may still be in use by other clients.
+     */
+    synchronized void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    synchronized void setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        scheduleSave();
+    }
+
+    /**
+     * @return the cached sound for the file, or null if the file is not cached or has changed since
+     */
+    Sound get(File source, SampleStorage storage)
+    {
+        Entry entry;
+        synchronized (this)
+        {
+            loadIndex();
+            entry = entries.get(source.getName());
+        }
+
+        if (entry == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            if (entry.size != source.length() || entry.modified != source.lastModified())
+            {
+                // Only hash the file when it looks changed, a touched but identical file is still a hit
+                if (entry.size != source.length() || !entry.hash.equals(hash(source)))
+                {
+                    return null;
+                }
+
+                synchronized (this)
+                {
+                    entry.modified = source.lastModified();
+                }
+            }
+
+            Sound sound = read(new File(directory, entry.hash + SAMPLE_EXTENSION), storage);
+            synchronized (this)
+            {
+                entry.lastUsed = System.currentTimeMillis();
+                scheduleSave();
+            }
+            return sound;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.debug("Discarding cached samples for {}", source.getName(), e);
+            synchronized (this)
+            {
+                entries.remove(source.getName());
+                scheduleSave();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return the content hash of the sound file, read from the index while the file is unchanged
+     */
+    String hashOf(File source) throws IOException
+    {
+        synchronized (this)
+        {
+            loadIndex();
+            Entry entry = entries.get(source.getName());
+            if (entry != null && entry.size == source.length() && entry.modified == source.lastModified())
+            {
+                return entry.hash;
+            }
+        }
+
+        return hash(source);
+    }
+
+    /**
+     * Stores the decoded samples of the file.
+     *
+     * @param hash the content hash of the file from {@link #hashOf(File)}
+     */
+    void put(File source, String hash, AudioFormat format, byte[] bytes, int length)
+    {
+        try
+        {
+            Entry entry = new Entry(source.getName(), source.length(), source.lastModified(), hash, System.currentTimeMillis());
+            File file = new File(directory, entry.hash + SAMPLE_EXTENSION);
+            if (!isComplete(file))
+            {
+                write(file, format, bytes, length);
+            }
+
+            synchronized (this)
+            {
+                loadIndex();
+                entries.put(entry.name, entry);
+                scheduleSave();
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to cache decoded samples for {}", source.getName(), e);
+        }
+    }
+
+    private Sound read(File file, SampleStorage storage) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt() != SAMPLE_MAGIC || mapped.getInt() != SAMPLE_VERSION)
+            {
+                throw new IOException("Not a cached sample file or from a different version");
+            }
+
+            AudioFormat.Encoding encoding = encoding(readString(mapped));
+            float sampleRate = mapped.getFloat();
+            int sampleSizeInBits = mapped.getInt();
+            int channels = mapped.getInt();
+            int frameSize = mapped.getInt();
+            float frameRate = mapped.getFloat();
+            boolean bigEndian = mapped.get() != 0;
+            int length = mapped.getInt();
+
+            AudioFormat format = new AudioFormat(encoding, sampleRate, sampleSizeInBits, channels, frameSize, frameRate, bigEndian);
+            ByteBuffer samples = mapped.slice();
+            samples.limit(length);
+            return new Sound(storage.adopt(samples), format);
+        }
+    }
+
+    /**
+     * @return true if the sample file was already written in the current format, possibly by another client
+     */
+    private static boolean isComplete(File file)
+    {
+        if (!file.exists())
+        {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file)))
+        {
+            return in.readInt() == SAMPLE_MAGIC && in.readInt() == SAMPLE_VERSION;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    private static void write(File file, AudioFormat format, byte[] bytes, int length) throws IOException
+    {
+        Files.createDirectories(file.getParentFile().toPath());
+        // Unique per writer, two clients caching the same sound each move a complete file into place
+        File temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp").toFile();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+        {
+            out.writeInt(SAMPLE_MAGIC);
+            out.writeInt(SAMPLE_VERSION);
+            out.writeUTF(format.getEncoding().toString());
+            out.writeFloat(format.getSampleRate());
+            out.writeInt(format.getSampleSizeInBits());
+            out.writeInt(format.getChannels());
+            out.writeInt(format.getFrameSize());
+            out.writeFloat(format.getFrameRate());
+            out.writeBoolean(format.isBigEndian());
+            out.writeInt(length);
+            out.write(bytes, 0, length);
+        }
+
+        move(temp, file);
+    }
+
+    /**
+     * @return the standard encoding with the name, the mixer compares encodings with the Java Sound constants
+     */
+    private static AudioFormat.Encoding encoding(String name)
+    {
+        AudioFormat.Encoding[] known = {
+            AudioFormat.Encoding.PCM_SIGNED,
+            AudioFormat.Encoding.PCM_UNSIGNED,
+            AudioFormat.Encoding.PCM_FLOAT,
+            AudioFormat.Encoding.ULAW,
+            AudioFormat.Encoding.ALAW
+        };
+
+        for (AudioFormat.Encoding encoding : known)
+        {
+            if (encoding.toString().equals(name))
+            {
+                return encoding;
+            }
+        }
+        return new AudioFormat.Encoding(name);
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void move(File from, File to) throws IOException
+    {
+        try
+        {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static String hash(File file) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file))
+        {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private void loadIndex()
+    {
+        if (!indexLoaded)
+        {
+            indexLoaded = true;
+            entries.putAll(readIndex());
+        }
+    }
+
+    private Map<String, Entry> readIndex()
+    {
+        Map<String, Entry> read = new HashMap<>();
+        File index = new File(directory, INDEX_FILE);
+        if (!index.exists())
+        {
+            return read;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(index.toPath(), StandardCharsets.UTF_8))
+        {
+            if (!INDEX_HEADER.equals(reader.readLine()))
+            {
+                log.debug("Ignoring sample cache index from a different version");
+                return read;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] parts = line.split("\t");
+                if (parts.length != 5)
+                {
+                    continue;
+                }
+
+                Entry entry = new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3], Long.parseLong(parts[4]));
+                read.put(entry.name, entry);
+            }
+        }
+        catch (IOException | NumberFormatException e)
+        {
+            log.warn("Unable to read the sample cache index, starting with an empty cache", e);
+            read.clear();
+        }
+        return read;
+    }
+
+    /**
+     * Takes in the entries other clients saved since the index was read, keeping the most recently
+     * used entry for each sound file.
+     */
+    private void mergeIndex()
+    {
+        for (Entry saved : readIndex().values())
+        {
+            Entry entry = entries.get(saved.name);
+            if (entry == null || saved.lastUsed > entry.lastUsed)
+            {
+                entries.put(saved.name, saved);
+            }
+        }
+    }
+
+    private void scheduleSave()
+    {
+        if (!saveScheduled)
+        {
+            saveScheduled = true;
+            try
+            {
+                scheduler.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // The loader is shutting down, there is nothing left to batch the write with
+                save();
+            }
+        }
+    }
+
+    /**
+     * Writes the index now if a save is still waiting, for when the scheduler stops before it runs.
+     */
+    synchronized void flush()
+    {
+        if (saveScheduled)
+        {
+            save();
+        }
+    }
+
+    /**
+     * Drops entries for deleted sound files, evicts the least recently used entries above the size
+     * limit, deletes sample files no entry refers to and writes the index.
+     */
+    synchronized void save()
+    {
+        saveScheduled = false;
+        if (!enabled)
+        {
+            return;
+        }
+        loadIndex();
+
+        try
+        {
+            Files.createDirectories(directory.toPath());
+            try (FileChannel channel = FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock())
+            {
+                mergeIndex();
+                evict();
+                writeIndex();
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to write the sample cache index", e);
+        }
+    }
+
+    private void evict()
+    {
+        File soundDirectory = directory.getParentFile();
+        entries.values().removeIf(entry -> !new File(soundDirectory, entry.name).exists());
+
+        List<Entry> byAge = new ArrayList<>(entries.values());
+        byAge.sort(Comparator.comparingLong((Entry entry) -> entry.lastUsed).reversed());
+
+        Set<String> kept = new HashSet<>();
+        long total = 0;
+        for (Entry entry : byAge)
+        {
+            if (kept.contains(entry.hash))
+            {
+                continue;
+            }
+
+            long size = new File(directory, entry.hash + SAMPLE_EXTENSION).length();
+            if (total + size > maxBytes)
+            {
+                entries.remove(entry.name);
+                continue;
+            }
+
+            total += size;
+            kept.add(entry.hash);
+        }
+        entries.values().removeIf(entry -> !kept.contains(entry.hash));
+
+        long unlisted = System.currentTimeMillis() - UNLISTED_GRACE_MS;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SAMPLE_EXTENSION) || name.endsWith(".tmp"));
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                if (name.endsWith(SAMPLE_EXTENSION) && kept.contains(name.substring(0, name.length() - SAMPLE_EXTENSION.length()))
+                        || file.lastModified() > unlisted)
+                {
+                    continue;
+                }
+
+                if (!file.delete())
+                {
+                    log.debug("Unable to delete stale cached samples {}", name);
+                }
+            }
+        }
+    }
+
+    private void writeIndex() throws IOException
+    {
+        File temp = new File(directory, INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8))
+        {
+            writer.write(INDEX_HEADER);
+            writer.newLine();
+            for (Entry entry : entries.values())
+            {
+                writer.write(entry.name + "\t" + entry.size + "\t" + entry.modified + "\t" + entry.hash + "\t" + entry.lastUsed);
+                writer.newLine();
+            }
+        }
+        move(temp, new File(directory, INDEX_FILE));
+    }
+
+    private static final class Entry
+    {
+        private final String name;
+        private final long size;
+        private long modified;
+        private final String hash;
+        private long lastUsed;
+
+        private Entry(String name, long size, long modified, String hash, long lastUsed)
+        {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact formats that loaded sounds can be kept in. Samples are compressed from the mixer format
+ * once when the sound loads and decoded by the mixer a buffer at a time as the sound plays.
+ */
+public enum SampleCompression
+{
+    NONE("None"),
+    MU_LAW("mu-law (1/2 size)"),
+    IMA_ADPCM("IMA ADPCM (1/4 size)");
+
+    private static final int MU_LAW_BIAS = 0x84;
+    private static final int MU_LAW_CLIP = 32635;
+    private static final short[] MU_LAW_DECODE = new short[256];
+
+    private static final int[] ADPCM_INDEX = {-1, -1, -1, -1, 2, 4, 6, 8};
+    private static final int[] ADPCM_STEP = {
+        7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+        50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+        337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+        2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+        15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+
+    static
+    {
+        for (int i = 0; i < 256; i++)
+        {
+            int value = ~i;
+            int exponent = (value >> 4) & 0x07;
+            int sample = (((value & 0x0f) << 3) + MU_LAW_BIAS) << exponent;
+            MU_LAW_DECODE[i] = (short) ((value & 0x80) != 0 ? MU_LAW_BIAS - sample : sample - MU_LAW_BIAS);
+        }
+    }
+
+    private final String name;
+
+    SampleCompression(String name)
+    {
+        this.name = name;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    /**
+     * Compresses 16 bit little endian stereo samples.
+     */
+    byte[] encode(ByteBuffer pcm)
+    {
+        ByteBuffer samples = pcm.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int count = samples.remaining() / 2;
+
+        switch (this)
+        {
+            case MU_LAW:
+            {
+                byte[] out = new byte[count];
+                for (int i = 0; i < count; i++)
+                {
+                    out[i] = muLawEncode(samples.getShort(i * 2));
+                }
+                return out;
+            }
+
+            case IMA_ADPCM:
+            {
+                // One byte per stereo frame, the left sample in the low nibble
+                int frames = count / 2;
+                byte[] out = new byte[frames];
+                AdpcmState left = new AdpcmState();
+                AdpcmState right = new AdpcmState();
+                for (int i = 0; i < frames; i++)
+                {
+                    int low = left.encode(samples.getShort(i * 4));
+                    int high = right.encode(samples.getShort(i * 4 + 2));
+                    out[i] = (byte) (low | (high << 4));
+                }
+                return out;
+            }
+
+            default:
+            {
+                byte[] out = new byte[count * 2];
+                samples.get(out);
+                return out;
+            }
+        }
+    }
+
+    /**
+     * Decodes compressed samples back to 16 bit little endian stereo.
+     */
+    byte[] decode(ByteBuffer encoded)
+    {
+        ByteBuffer in = encoded.duplicate();
+        int length = in.remaining();
+
+        switch (this)
+        {
+            case MU_LAW:
+            {
+                byte[] out = new byte[length * 2];
+                for (int i = 0; i < length; i++)
+                {
+                    short sample = muLawDecode(in.get(i));
+                    out[i * 2] = (byte) sample;
+                    out[i * 2 + 1] = (byte) (sample >> 8);
+                }
+                return out;
+            }
+
+            case IMA_ADPCM:
+            {
+                byte[] out = new byte[length * 4];
+                AdpcmState left = new AdpcmState();
+                AdpcmState right = new AdpcmState();
+                for (int i = 0; i < length; i++)
+                {
+                    int b = in.get(i);
+                    int l = left.decode(b & 0x0f);
+                    int r = right.decode((b >> 4) & 0x0f);
+                    out[i * 4] = (byte) l;
+                    out[i * 4 + 1] = (byte) (l >> 8);
+                    out[i * 4 + 2] = (byte) r;
+                    out[i * 4 + 3] = (byte) (r >> 8);
+                }
+                return out;
+            }
+
+            default:
+            {
+                byte[] out = new byte[length];
+                in.get(out);
+                return out;
+            }
+        }
+    }
+
+    /**
+     * @return the signal to noise ratio in decibels of the decoded samples against the original
+     */
+    static double signalToNoise(ByteBuffer original, byte[] decoded)
+    {
+        ByteBuffer samples = original.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer result = ByteBuffer.wrap(decoded).order(ByteOrder.LITTLE_ENDIAN);
+        int count = Math.min(samples.remaining(), decoded.length) / 2;
+
+        double signal = 0;
+        double noise = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int expected = samples.getShort(i * 2);
+            int error = expected - result.getShort(i * 2);
+            signal += (double) expected * expected;
+            noise += (double) error * error;
+        }
+
+        return noise == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(signal / noise);
+    }
+
+    static short muLawDecode(byte b)
+    {
+        return MU_LAW_DECODE[b & 0xff];
+    }
+
+    static byte muLawEncode(int sample)
+    {
+        int sign = (sample >> 8) & 0x80;
+        if (sign != 0)
+        {
+            sample = -sample;
+        }
+        if (sample > MU_LAW_CLIP)
+        {
+            sample = MU_LAW_CLIP;
+        }
+        sample += MU_LAW_BIAS;
+
+        int exponent = 7;
+        for (int mask = 0x4000; (sample & mask) == 0 && exponent > 0; mask >>= 1)
+        {
+            exponent--;
+        }
+
+        int mantissa = (sample >> (exponent + 3)) & 0x0f;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    /**
+     * Predictor state of one IMA ADPCM channel.
+     */
+    static final class AdpcmState
+    {
+        private int predictor;
+        private int index;
+
+        int decode(int nibble)
+        {
+            int step = ADPCM_STEP[index];
+            int diff = step >> 3;
+            if ((nibble & 4) != 0)
+            {
+                diff += step;
+            }
+            if ((nibble & 2) != 0)
+            {
+                diff += step >> 1;
+            }
+            if ((nibble & 1) != 0)
+            {
+                diff += step >> 2;
+            }
+
+            predictor += (nibble & 8) != 0 ? -diff : diff;
+            if (predictor > Short.MAX_VALUE)
+            {
+                predictor = Short.MAX_VALUE;
+            }
+            else if (predictor < Short.MIN_VALUE)
+            {
+                predictor = Short.MIN_VALUE;
+            }
+
+            index += ADPCM_INDEX[nibble & 7];
+            if (index < 0)
+            {
+                index = 0;
+            }
+            else if (index > ADPCM_STEP.length - 1)
+            {
+                index = ADPCM_STEP.length - 1;
+            }
+
+            return predictor;
+        }
+
+        int encode(int sample)
+        {
+            int step = ADPCM_STEP[index];
+            int diff = sample - predictor;
+            int nibble = 0;
+            if (diff < 0)
+            {
+                nibble = 8;
+                diff = -diff;
+            }
+
+            for (int bit = 4; bit > 0; bit >>= 1)
+            {
+                if (diff >= step)
+                {
+                    nibble |= bit;
+                    diff -= step;
+                }
+                step >>= 1;
+            }
+
+            // Track the decoder so rounding errors do not accumulate
+            decode(nibble);
+            return nibble;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Converts decoded PCM samples to the mixer's output format once when a sound is loaded, so that
+ * nothing has to be converted each time the sound plays.
+ */
+final class SampleConverter
+{
+    private SampleConverter()
+    {
+    }
+
+    static boolean isMixerFormat(AudioFormat format)
+    {
+        AudioFormat target = SoundMixer.FORMAT;
+        return AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())
+                && format.getSampleSizeInBits() == target.getSampleSizeInBits()
+                && format.getChannels() == target.getChannels()
+                && format.getSampleRate() == target.getSampleRate()
+                && format.isBigEndian() == target.isBigEndian();
+    }
+
+    static boolean canConvert(AudioFormat format)
+    {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(encoding))
+        {
+            return bits == 32 || bits == 64;
+        }
+
+        return (AudioFormat.Encoding.PCM_SIGNED.equals(encoding) || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding))
+                && bits % 8 == 0 && bits >= 8 && bits <= 32
+                && format.getChannels() > 0
+                && format.getSampleRate() > 0;
+    }
+
+    /**
+     * Converts PCM samples of any bit depth, byte order and channel count to 16 bit stereo at the
+     * mixer's sample rate. Mono is copied to both channels, channels past the second are dropped and
+     * the sample rate is changed with linear interpolation.
+     */
+    static byte[] toMixerFormat(AudioFormat format, byte[] bytes, int length)
+    {
+        int channels = format.getChannels();
+        int bytesPerSample = format.getSampleSizeInBits() / 8;
+        int frameSize = channels * bytesPerSample;
+        int frames = length / frameSize;
+
+        float[] left = new float[frames];
+        float[] right = new float[frames];
+        for (int frame = 0, offset = 0; frame < frames; frame++, offset += frameSize)
+        {
+            left[frame] = readSample(format, bytes, offset);
+            right[frame] = channels > 1 ? readSample(format, bytes, offset + bytesPerSample) : left[frame];
+        }
+
+        AudioFormat target = SoundMixer.FORMAT;
+        double step = format.getSampleRate() / target.getSampleRate();
+        int outFrames = frames == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE / target.getFrameSize(), (long) Math.floor((frames - 1) / step) + 1);
+
+        byte[] out = new byte[outFrames * target.getFrameSize()];
+        for (int frame = 0, offset = 0; frame < outFrames; frame++, offset += 4)
+        {
+            double position = frame * step;
+            int index = (int) position;
+            float fraction = (float) (position - index);
+            int next = Math.min(index + 1, frames - 1);
+
+            writeSample(out, offset, left[index] + (left[next] - left[index]) * fraction);
+            writeSample(out, offset + 2, right[index] + (right[next] - right[index]) * fraction);
+        }
+
+        return out;
+    }
+
+    /**
+     * @return the sample at the offset scaled to -1..1
+     */
+    private static float readSample(AudioFormat format, byte[] bytes, int offset)
+    {
+        int bits = format.getSampleSizeInBits();
+        int bytesPerSample = bits / 8;
+        boolean bigEndian = format.isBigEndian();
+
+        long value = 0;
+        for (int i = 0; i < bytesPerSample; i++)
+        {
+            int b = bytes[offset + (bigEndian ? i : bytesPerSample - 1 - i)] & 0xff;
+            value = (value << 8) | b;
+        }
+
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding()))
+        {
+            return bits == 32 ? Float.intBitsToFloat((int) value) : (float) Double.longBitsToDouble(value);
+        }
+
+        if (AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding()))
+        {
+            value -= 1L << (bits - 1);
+        }
+        else
+        {
+            // Sign extend
+            value = (value << (64 - bits)) >> (64 - bits);
+        }
+
+        return (float) (value / (double) (1L << (bits - 1)));
+    }
+
+    private static void writeSample(byte[] out, int offset, float sample)
+    {
+        int value = Math.round(sample * Short.MAX_VALUE);
+        if (value > Short.MAX_VALUE)
+        {
+            value = Short.MAX_VALUE;
+        }
+        else if (value < Short.MIN_VALUE)
+        {
+            value = Short.MIN_VALUE;
+        }
+
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >> 8);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+/**
+ * Fixed size byte ring buffer for a single producer thread and a single consumer thread.
+ */
+final class SampleRing
+{
+    private final byte[] buffer;
+    private final int mask;
+
+    private volatile long written;
+    private volatile long read;
+
+    /**
+     * @param capacity the size of the ring, a power of two
+     */
+    SampleRing(int capacity)
+    {
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+
+        buffer = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    int capacity()
+    {
+        return buffer.length;
+    }
+
+    /**
+     * @return the number of bytes the consumer can read
+     */
+    int available()
+    {
+        return (int) (written - read);
+    }
+
+    /**
+     * Producer only. Copies as many bytes as fit into the ring.
+     *
+     * @return the number of bytes copied
+     */
+    int write(byte[] src, int offset, int length)
+    {
+        long w = written;
+        int count = Math.min(length, buffer.length - (int) (w - read));
+        for (int i = 0; i < count; i++)
+        {
+            buffer[(int) (w + i) & mask] = src[offset + i];
+        }
+        written = w + count;
+        return count;
+    }
+
+    /**
+     * Consumer only. Reads a little endian 16 bit sample at the offset past the read position,
+     * which must be within {@link #available()}.
+     */
+    short peekShort(int offset)
+    {
+        long r = read + offset;
+        return (short) ((buffer[(int) r & mask] & 0xff) | (buffer[(int) (r + 1) & mask] << 8));
+    }
+
+    /**
+     * Consumer only. Releases bytes that have been read back to the producer.
+     */
+    void skip(int length)
+    {
+        read += length;
+    }
+}
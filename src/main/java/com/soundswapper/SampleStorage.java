@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import java.nio.ByteBuffer;
+
+public enum SampleStorage
+{
+    HEAP("Heap"),
+    DIRECT("Off-heap"),
+    MAPPED("Memory mapped");
+
+    private final String name;
+
+    SampleStorage(String name)
+    {
+        this.name = name;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    /**
+     * Moves decoded samples into a buffer of this storage type. Mapped samples are only mapped from
+     * the sample cache or the sound pack, samples that have no such file are kept off-heap.
+     */
+    ByteBuffer store(byte[] bytes, int length)
+    {
+        switch (this)
+        {
+            case DIRECT:
+            case MAPPED:
+            {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+                buffer.put(bytes, 0, length).flip();
+                return buffer;
+            }
+
+            default:
+                return ByteBuffer.wrap(bytes, 0, length).slice();
+        }
+    }
+
+    /**
+     * Takes samples that are already mapped from a file, copying them unless this storage is mapped.
+     */
+    ByteBuffer adopt(ByteBuffer mapped)
+    {
+        switch (this)
+        {
+            case DIRECT:
+            {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(mapped.remaining());
+                buffer.put(mapped.duplicate()).flip();
+                return buffer;
+            }
+
+            case MAPPED:
+                return mapped;
+
+            default:
+            {
+                byte[] bytes = new byte[mapped.remaining()];
+                mapped.duplicate().get(bytes);
+                return ByteBuffer.wrap(bytes);
+            }
+        }
+    }
+}
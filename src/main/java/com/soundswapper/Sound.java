@@ -26,23 +26,77 @@
 package com.soundswapper;
 
 import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class Sound
 {
-    private byte[] bytes;
-    private AudioFormat format;
-    private int numBytes;
+    private final ByteBuffer samples;
+    private final AudioFormat format;
+    private final int numBytes;
+    private final File streamFile;
+    private final SampleCompression compression;
 
-    Sound(byte[] bytes, AudioFormat format, int numBytes)
+    Sound(ByteBuffer samples, AudioFormat format)
     {
-        this.bytes = bytes;
+        this(samples, format, SampleCompression.NONE);
+    }
+
+    /**
+     * @param format the format of the samples once they are decoded
+     */
+    Sound(ByteBuffer samples, AudioFormat format, SampleCompression compression)
+    {
+        this.samples = samples.asReadOnlyBuffer().order(format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        this.format = format;
+        this.numBytes = samples.remaining();
+        this.streamFile = null;
+        this.compression = compression;
+    }
+
+    /**
+     * Creates a sound that is streamed from its file each time it plays instead of being held in memory.
+     */
+    Sound(File streamFile, AudioFormat format)
+    {
+        this.samples = ByteBuffer.allocate(0);
         this.format = format;
-        this.numBytes = numBytes;
+        this.numBytes = 0;
+        this.streamFile = streamFile;
+        this.compression = SampleCompression.NONE;
+    }
+
+    /**
+     * @return a read-only view of the samples in the byte order of the format, shared between every
+     * caller so it should only be read with absolute gets or through a duplicate
+     */
+    public ByteBuffer getSamples()
+    {
+        return samples;
+    }
+
+    /**
+     * @return a heap copy of the decoded samples, for APIs that only accept arrays
+     */
+    public byte[] copyBytes()
+    {
+        return compression.decode(samples);
+    }
+
+    public SampleCompression getCompression()
+    {
+        return compression;
+    }
+
+    public boolean isStreamed()
+    {
+        return streamFile != null;
     }
 
-    public byte[] getBytes()
+    public File getStreamFile()
     {
-        return bytes;
+        return streamFile;
     }
 
     public AudioFormat getFormat()
@@ -50,6 +104,9 @@ public class Sound
         return format;
     }
 
+    /**
+     * @return the size of the samples as they are stored, compressed or not
+     */
     public int getNumBytes()
     {
         return numBytes;
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.Consumer;
+
+/**
+ * Watches the SoundSwapper folder and reports the name of every sound file that is created,
+ * modified or deleted, so changed sounds can be reloaded without touching the config.
+ */
+@Slf4j
+class SoundDirectoryWatcher
+{
+    private static final String EXTENSION = ".wav";
+
+    private final Path directory;
+    private final Consumer<String> onChange;
+
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * @param onChange called with the sound name (the file name without .wav) of each changed file, or
+     *                 with null if events were lost and every sound should be checked
+     */
+    SoundDirectoryWatcher(Path directory, Consumer<String> onChange)
+    {
+        this.directory = directory;
+        this.onChange = onChange;
+    }
+
+    synchronized void start() throws IOException
+    {
+        if (watchService != null)
+        {
+            return;
+        }
+
+        WatchService service = directory.getFileSystem().newWatchService();
+        try
+        {
+            directory.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        catch (IOException e)
+        {
+            service.close();
+            throw e;
+        }
+
+        // The thread gets its own reference, stop may clear the field before the thread first runs
+        watchService = service;
+        thread = new Thread(() -> watch(service), "SoundSwapper Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop()
+    {
+        if (watchService == null)
+        {
+            return;
+        }
+
+        try
+        {
+            watchService.close();
+        }
+        catch (IOException e)
+        {
+            log.debug("Unable to close the sound folder watcher", e);
+        }
+
+        watchService = null;
+        thread = null;
+    }
+
+    private void watch(WatchService service)
+    {
+        try
+        {
+            while (true)
+            {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                    {
+                        onChange.accept(null);
+                        continue;
+                    }
+
+                    String fileName = event.context().toString();
+                    if (fileName.toLowerCase().endsWith(EXTENSION))
+                    {
+                        onChange.accept(fileName.substring(0, fileName.length() - EXTENSION.length()));
+                    }
+                }
+
+                if (!key.reset())
+                {
+                    log.debug("Sound folder is no longer accessible, stopped watching it");
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // stopped
+        }
+    }
+}
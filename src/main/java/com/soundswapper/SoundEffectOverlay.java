@@ -26,18 +26,14 @@
 package com.soundswapper;
 
 import lombok.extern.slf4j.Slf4j;
-import net.runelite.api.Client;
-import net.runelite.api.Player;
-import net.runelite.api.coords.LocalPoint;
-import net.runelite.api.events.AreaSoundEffectPlayed;
-import net.runelite.api.events.SoundEffectPlayed;
-import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.ui.overlay.OverlayPanel;
 import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LayoutableRenderableEntity;
 import net.runelite.client.ui.overlay.components.LineComponent;
 
 import javax.inject.Inject;
 import java.awt.*;
+import java.util.List;
 
 @Slf4j
 class SoundEffectOverlay extends OverlayPanel
@@ -51,24 +47,37 @@ class SoundEffectOverlay extends OverlayPanel
     private final static Color COLOR_CUSTOM = Color.PINK;
     private final static Color COLOR_BLACKLISTED = Color.ORANGE;
     private final static Color COLOR_WHITELISTED = Color.WHITE;
+    private final static Color COLOR_SWAPPED = Color.CYAN;
+    private final static Color COLOR_CULLED = Color.GRAY;
 
     public static final String ALLOWED = "Allowed";
     public static final String BLACKLISTED = "Blacklisted";
     public static final String CONSUMED = "Consumed";
     public static final String CUSTOM = "Custom";
     public static final String WHITELISTED = "Whitelisted";
+    public static final String SWAPPED = "Swapped";
+    public static final String CULLED = "Culled";
+
+    // Indexed by the journal's actions
+    private static final String[] ACTION_NAMES = {ALLOWED, CONSUMED, BLACKLISTED, WHITELISTED, CUSTOM, SWAPPED, CULLED};
+    private static final Color[] ACTION_COLORS = {COLOR_ALLOWED, COLOR_CONSUMED, COLOR_BLACKLISTED, COLOR_WHITELISTED, COLOR_CUSTOM, COLOR_SWAPPED, COLOR_CULLED};
+
+    private static final int ENTRIES = MAX_LINES - 1;
 
-    private final Client client;
     private SoundSwapperPlugin plugin;
 
-    private SoundSwapperConfig config;
+    private volatile long cleared;
+
+    private final DecisionJournal.Entry entry = new DecisionJournal.Entry();
+    private final LineComponent[] lines = new LineComponent[ENTRIES];
+    private final long[] lineEntries = new long[ENTRIES];
+    private long renderedStart = -1;
+    private long renderedEnd = -1;
 
     @Inject
-    SoundEffectOverlay(Client client, SoundSwapperPlugin plugin, SoundSwapperConfig config)
+    SoundEffectOverlay(SoundSwapperPlugin plugin)
     {
-        this.client = client;
         this.plugin = plugin;
-        this.config = config;
 
         panelComponent.getChildren().add(LineComponent.builder()
                 .left("Sound Effects")
@@ -82,144 +91,86 @@ class SoundEffectOverlay extends OverlayPanel
     @Override
     public Dimension render(Graphics2D graphics)
     {
-        if (!config.debugSoundEffects())
+        if (!plugin.getSnapshot().isDebugSoundEffects())
         {
             return null;
         }
 
+        updateLines();
         return super.render(graphics);
     }
 
-    @Subscribe
-    public void onSoundEffectPlayed(SoundEffectPlayed event)
+    /**
+     * Copies the newest decisions from the plugin's journal into the panel, building a line only for
+     * decisions that were not shown in the previous frame.
+     */
+    private void updateLines()
     {
-        if (!config.debugSoundEffects())
+        DecisionJournal journal = plugin.getJournal();
+        long end = journal.getWritten();
+        long start = Math.max(cleared, end - ENTRIES);
+        if (start == renderedStart && end == renderedEnd)
         {
             return;
         }
 
-        int soundId = event.getSoundId();
-
-        String text = "G: " + soundId;
+        List<LayoutableRenderableEntity> children = panelComponent.getChildren();
+        children.subList(1, children.size()).clear();
 
-        String action = ALLOWED;
-        Color actionColor = COLOR_ALLOWED;
-
-        if (config.consumeSoundEffects())
+        for (long index = start; index < end; index++)
         {
-            action = CONSUMED;
-            actionColor = COLOR_CONSUMED;
-        }
-
-        if (plugin.blacklistedSounds.contains(soundId))
-        {
-            action = BLACKLISTED;
-            actionColor = COLOR_BLACKLISTED;
-        }
-
-        if (plugin.whitelistedSounds.contains(soundId))
-        {
-            action = WHITELISTED;
-            actionColor = COLOR_WHITELISTED;
-        }
-
-        if (plugin.customSounds.containsKey(soundId))
-        {
-            action = CUSTOM;
-            actionColor = COLOR_CUSTOM;
-        }
-
-        panelComponent.getChildren().add(LineComponent.builder()
-                .left(text)
-                .leftColor(COLOR_SOUND_EFFECT)
-                .right(action)
-                .rightColor(actionColor)
-                .build());
-
-        checkMaxLines();
-    }
-
-    @Subscribe
-    public void onAreaSoundEffectPlayed(AreaSoundEffectPlayed event)
-    {
-        if (!config.debugSoundEffects())
-        {
-            return;
-        }
-
-        Color textColor = COLOR_AREA_SOUND_EFFECT;
-        Color actionColor = COLOR_ALLOWED;
-
-        int soundId = event.getSoundId();
-        String text = "A: " + soundId;
-        String action = ALLOWED;
-
-        // Check if the player is within range to hear the sound
-        Player localPlayer = client.getLocalPlayer();
-        if (localPlayer != null)
-        {
-            LocalPoint lp = localPlayer.getLocalLocation();
-            if (lp != null)
+            int slot = (int) (index % ENTRIES);
+            if (lines[slot] == null || lineEntries[slot] != index)
             {
-                int sceneX = lp.getSceneX();
-                int sceneY = lp.getSceneY();
-                int distance = Math.abs(sceneX - event.getSceneX()) + Math.abs(sceneY - event.getSceneY());
-                if (distance > event.getRange())
+                if (!journal.read(index, entry))
                 {
-                    textColor = COLOR_SILENT_SOUND_EFFECT;
-                    text = "SA: " + soundId;
+                    continue;
                 }
+
+                lines[slot] = createLine(entry);
+                lineEntries[slot] = index;
             }
+            children.add(lines[slot]);
         }
 
-        if (config.consumeAreaSounds())
-        {
-            action = CONSUMED;
-            actionColor = COLOR_CONSUMED;
-        }
+        renderedStart = start;
+        renderedEnd = end;
+    }
 
-        if (plugin.blacklistedAreaSounds.contains(soundId))
+    private static LineComponent createLine(DecisionJournal.Entry entry)
+    {
+        String text;
+        Color textColor;
+        if (entry.type == DecisionJournal.SOUND_EFFECT)
         {
-            action = BLACKLISTED;
-            actionColor = COLOR_BLACKLISTED;
+            text = "G: " + entry.soundId;
+            textColor = COLOR_SOUND_EFFECT;
         }
-
-        if (plugin.whitelistedAreaSounds.contains(soundId))
+        else if (entry.inRange)
         {
-            action = WHITELISTED;
-            actionColor = COLOR_WHITELISTED;
+            text = "A: " + entry.soundId;
+            textColor = COLOR_AREA_SOUND_EFFECT;
         }
-
-        if (plugin.customAreaSounds.containsKey(soundId))
+        else
         {
-            action = CUSTOM;
-            actionColor = COLOR_CUSTOM;
+            text = "SA: " + entry.soundId;
+            textColor = COLOR_SILENT_SOUND_EFFECT;
         }
 
-        panelComponent.getChildren().add(LineComponent.builder()
+        return LineComponent.builder()
                 .left(text)
                 .leftColor(textColor)
-                .right(action)
-                .rightColor(actionColor)
-                .build());
-
-        checkMaxLines();
-    }
-
-    private void checkMaxLines()
-    {
-        while (panelComponent.getChildren().size() > MAX_LINES)
-        {
-            panelComponent.getChildren().remove(1);
-        }
+                .right(ACTION_NAMES[entry.action])
+                .rightColor(ACTION_COLORS[entry.action])
+                .build();
     }
 
+    /**
+     * Hides every line shown so far. Safe to call from any thread, the panel itself is only
+     * changed while rendering.
+     */
     public void resetLines()
     {
-        panelComponent.getChildren().clear();
-        panelComponent.getChildren().add(LineComponent.builder()
-                .left("Sound Effects")
-                .leftColor(Color.CYAN)
-                .build());
+        cleared = plugin.getJournal().getWritten();
     }
 }
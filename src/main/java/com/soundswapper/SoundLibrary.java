@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.util.Text;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The custom sounds loaded for one of the sound id lists in the config. Sounds are loaded in the
+ * background and become visible one at a time as they finish, until then the native sound plays.
+ * In lazy mode sounds are only indexed here and loaded by the {@link ResidentSoundCache} when
+ * they first play.
+ */
+@Slf4j
+class SoundLibrary
+{
+    private static final long UPDATE_DELAY_MS = 500;
+    private static final long RELOAD_DELAY_MS = 250;
+
+    private final SoundLoader loader;
+    private final Runnable onChange;
+    private final Consumer<Sound> onAdd;
+    private final Consumer<Sound> onRemove;
+
+    private final Map<Integer, Sound> sounds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> indexed = new ConcurrentHashMap<>();
+
+    private boolean lazy;
+
+    // The file name of every configured id, loads for ids no longer in here are discarded
+    private Map<Integer, String> configured = new HashMap<>();
+    private ScheduledFuture<?> pendingUpdate;
+    private final Map<String, ScheduledFuture<?>> pendingReloads = new HashMap<>();
+
+    // The newest load started for each id, a load that finishes after a newer one started is stale
+    private final Map<Integer, Integer> latestLoads = new HashMap<>();
+    private int loadSequence;
+
+    /**
+     * @param onChange called whenever a sound is added or removed
+     * @param onAdd called with every sound that is loaded into the library
+     * @param onRemove called with every sound that is dropped from the library
+     */
+    SoundLibrary(SoundLoader loader, Runnable onChange, Consumer<Sound> onAdd, Consumer<Sound> onRemove)
+    {
+        this.loader = loader;
+        this.onChange = onChange;
+        this.onAdd = onAdd;
+        this.onRemove = onRemove;
+    }
+
+    /**
+     * Applies the config list once it has stopped changing, so typing an id does not reload the
+     * library on every keystroke.
+     */
+    synchronized void scheduleUpdate(String configText)
+    {
+        cancelPendingUpdate();
+        pendingUpdate = loader.schedule(() -> update(configText), UPDATE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Loads the ids added to the config list and drops the removed ones, sounds for ids that are
+     * still configured are kept as they are.
+     */
+    synchronized void update(String configText)
+    {
+        cancelPendingUpdate();
+        apply(parse(configText));
+    }
+
+    /**
+     * Switches between loading every sound up front and only indexing the sound files.
+     */
+    synchronized void setLazy(boolean lazy)
+    {
+        if (this.lazy == lazy)
+        {
+            return;
+        }
+
+        this.lazy = lazy;
+        Map<Integer, String> current = configured;
+        configured = new HashMap<>();
+        clearSounds();
+        apply(current);
+        onChange.run();
+    }
+
+    private void apply(Map<Integer, String> updated)
+    {
+        Map<Integer, String> previous = configured;
+        configured = updated;
+
+        boolean changed = false;
+        for (Map.Entry<Integer, String> entry : previous.entrySet())
+        {
+            if (!entry.getValue().equals(updated.get(entry.getKey())))
+            {
+                changed |= remove(entry.getKey());
+            }
+        }
+
+        for (Map.Entry<Integer, String> entry : updated.entrySet())
+        {
+            int id = entry.getKey();
+            String name = entry.getValue();
+            if (!name.equals(previous.get(id)))
+            {
+                load(id, name);
+            }
+        }
+
+        if (changed)
+        {
+            onChange.run();
+        }
+    }
+
+    /**
+     * Loads every configured sound again, each sound is replaced once its new copy is ready.
+     */
+    synchronized void reload()
+    {
+        configured.forEach(this::load);
+    }
+
+    /**
+     * Reloads the ids using the sound file once it stops changing, or drops them if it was deleted.
+     */
+    synchronized void fileChanged(String name)
+    {
+        if (!configured.containsValue(name))
+        {
+            return;
+        }
+
+        ScheduledFuture<?> pending = pendingReloads.remove(name);
+        if (pending != null)
+        {
+            pending.cancel(false);
+        }
+
+        pendingReloads.put(name, loader.schedule(() -> reloadFile(name), RELOAD_DELAY_MS, TimeUnit.MILLISECONDS));
+    }
+
+    synchronized void clear()
+    {
+        cancelPendingUpdate();
+        pendingReloads.values().forEach(pending -> pending.cancel(false));
+        pendingReloads.clear();
+        configured = new HashMap<>();
+        latestLoads.clear();
+        clearSounds();
+    }
+
+    /**
+     * Adds a custom sound rule for every loaded or, in lazy mode, indexed sound.
+     */
+    void addTo(SoundTable.Builder table, int volume)
+    {
+        sounds.forEach((id, sound) -> table.custom(id, sound, null, volume));
+        indexed.forEach((id, name) -> table.custom(id, null, name, volume));
+    }
+
+    private synchronized void reloadFile(String name)
+    {
+        pendingReloads.remove(name);
+        configured.forEach((id, configuredName) ->
+        {
+            if (configuredName.equals(name))
+            {
+                load(id, name);
+            }
+        });
+    }
+
+    private void load(int id, String name)
+    {
+        int sequence = ++loadSequence;
+        latestLoads.put(id, sequence);
+
+        if (lazy)
+        {
+            index(id, name);
+        }
+        else
+        {
+            loader.loadAsync(name).whenComplete((sound, e) ->
+            {
+                if (e != null)
+                {
+                    log.warn("Unable to load custom sound " + name, e);
+                }
+                publish(id, name, sequence, sound);
+            });
+        }
+    }
+
+    private void index(int id, String name)
+    {
+        boolean changed;
+        if (loader.exists(name))
+        {
+            changed = !name.equals(indexed.put(id, name));
+        }
+        else
+        {
+            changed = indexed.remove(id) != null;
+        }
+
+        if (changed)
+        {
+            onChange.run();
+        }
+    }
+
+    /**
+     * Swaps the loaded sound in for the id, or removes the id's sound if it could not be loaded.
+     */
+    private synchronized void publish(int id, String name, int sequence, Sound sound)
+    {
+        Integer latest = latestLoads.get(id);
+        if (latest == null || latest != sequence || !name.equals(configured.get(id)))
+        {
+            return;
+        }
+
+        if (sound == null)
+        {
+            if (remove(id))
+            {
+                onChange.run();
+            }
+            return;
+        }
+
+        // A reload of an unchanged file gets back the same shared samples
+        Sound previous = sounds.put(id, sound);
+        if (previous != sound)
+        {
+            onAdd.accept(sound);
+            if (previous != null)
+            {
+                onRemove.accept(previous);
+            }
+        }
+
+        onChange.run();
+    }
+
+    private boolean remove(int id)
+    {
+        if (indexed.remove(id) != null)
+        {
+            return true;
+        }
+
+        Sound sound = sounds.remove(id);
+        if (sound != null)
+        {
+            onRemove.accept(sound);
+            return true;
+        }
+        return false;
+    }
+
+    private void clearSounds()
+    {
+        indexed.clear();
+        sounds.values().forEach(onRemove);
+        sounds.clear();
+    }
+
+    private void cancelPendingUpdate()
+    {
+        if (pendingUpdate != null)
+        {
+            pendingUpdate.cancel(false);
+            pendingUpdate = null;
+        }
+    }
+
+    /**
+     * Reads a list of ids, each playing the sound file named after it or, written as id:name, the
+     * named sound file so that several ids can share one file.
+     */
+    private static Map<Integer, String> parse(String configText)
+    {
+        Map<Integer, String> ids = new HashMap<>();
+        if (configText == null || configText.isEmpty())
+        {
+            return ids;
+        }
+
+        for (String s : Text.fromCSV(configText))
+        {
+            int separator = s.indexOf(':');
+            String id = separator < 0 ? s : s.substring(0, separator).trim();
+            String name = separator < 0 ? s : s.substring(separator + 1).trim();
+            if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.startsWith("."))
+            {
+                log.warn("Invalid sound file name: {}", s);
+                continue;
+            }
+
+            try
+            {
+                ids.putIfAbsent(Integer.parseInt(id), name);
+            }
+            catch (NumberFormatException e)
+            {
+                log.warn("Invalid sound ID: {}", s);
+            }
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,832 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads and decodes custom sound files on a small pool of background threads.
+ */
+@Slf4j
+class SoundLoader
+{
+    static final int DEFAULT_STREAMING_THRESHOLD = 20;
+
+    private static final int MAX_THREADS = 4;
+    private static final int MAX_SOUND_BYTES = Integer.MAX_VALUE - 8;
+
+    private final File directory;
+    private final boolean wavParser;
+    private final boolean shareSounds;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final SampleCache cache;
+
+    private final AtomicLong conversions = new AtomicLong();
+    private final AtomicLong conversionNanos = new AtomicLong();
+    private final AtomicLong sourceBytes = new AtomicLong();
+    private final AtomicLong convertedBytes = new AtomicLong();
+    private final LatencyHistogram loadTimes = new LatencyHistogram();
+    private final AtomicLong sharedLoads = new AtomicLong();
+
+    // Keyed by the length of the sound file, only files of equal length can have the same content
+    private final Map<Long, List<SharedSound>> sharedSounds = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Sound> clearedSounds = new ReferenceQueue<>();
+
+    private volatile SampleStorage storage = SampleStorage.HEAP;
+    private volatile int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+    private volatile SampleCompression compression = SampleCompression.NONE;
+    private volatile boolean cacheEnabled = true;
+    private volatile boolean sharedCache;
+    private volatile SoundPack pack;
+
+    SoundLoader(File directory)
+    {
+        this(directory, true, true);
+    }
+
+    /**
+     * @param wavParser   read plain wavs with {@link WavFile} instead of AudioSystem, there is no setting
+     *                    for it, only the wav parser benchmark turns it off
+     * @param shareSounds hand out the samples already loaded for identical files, the load benchmarks
+     *                    turn it off to measure every load
+     */
+    SoundLoader(File directory, boolean wavParser, boolean shareSounds)
+    {
+        this.directory = directory;
+        this.wavParser = wavParser;
+        this.shareSounds = shareSounds;
+
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+        AtomicInteger threadId = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r ->
+        {
+            Thread thread = new Thread(r, "SoundSwapper Loader " + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        scheduler = new ScheduledThreadPoolExecutor(1, r ->
+        {
+            Thread thread = new Thread(r, "SoundSwapper Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setKeepAliveTime(30, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        scheduler.setRemoveOnCancelPolicy(true);
+
+        cache = new SampleCache(new File(directory, ".cache"), scheduler);
+    }
+
+    void setStorage(SampleStorage storage)
+    {
+        this.storage = storage;
+    }
+
+    /**
+     * @param seconds sounds longer than this are streamed from disk, 0 to load every sound into memory
+     */
+    void setStreamingThreshold(int seconds)
+    {
+        streamingThreshold = seconds;
+    }
+
+    void setCompression(SampleCompression compression)
+    {
+        this.compression = compression;
+    }
+
+    /**
+     * @param shared play uncompressed sounds straight from the mapped cache files, so every client on
+     *               the computer shares one copy of the samples through the page cache
+     */
+    void setCache(boolean enabled, int maxMegabytes, boolean shared)
+    {
+        cacheEnabled = enabled;
+        sharedCache = shared;
+        cache.setEnabled(enabled);
+        if (enabled)
+        {
+            cache.setMaxBytes(maxMegabytes * 1024L * 1024L);
+        }
+    }
+
+    /**
+     * Stops the loader threads. Pending reloads are dropped, loads already queued still run and the
+     * cache index is written straight away instead of after the save delay. The loader cannot be used
+     * afterwards.
+     *
+     * @return false if the queued loads did not finish within the timeout
+     */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduler.shutdown();
+        // A running list update may still be queueing its loads
+        boolean finished = scheduler.awaitTermination(timeout, unit);
+        executor.shutdown();
+        finished = executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) && finished;
+        cache.flush();
+        return finished;
+    }
+
+    ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit)
+    {
+        return scheduler.schedule(task, delay, unit);
+    }
+
+    /**
+     * Loads the sound in the background.
+     *
+     * @return a future completed with the sound, or with null if the file is missing or unreadable
+     */
+    CompletableFuture<Sound> loadAsync(String soundName)
+    {
+        return CompletableFuture.supplyAsync(() -> load(soundName), executor);
+    }
+
+    boolean exists(String soundName)
+    {
+        SoundPack soundPack = pack;
+        return new File(directory, soundName + ".wav").exists() || soundPack != null && soundPack.contains(soundName);
+    }
+
+    Sound load(String soundName)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return loadSound(soundName);
+        }
+        finally
+        {
+            loadTimes.record(System.nanoTime() - start);
+        }
+    }
+
+    private Sound loadSound(String soundName)
+    {
+        File soundFile = new File(directory, soundName + ".wav");
+
+        SoundPack soundPack = pack;
+        Sound packed = soundPack != null ? soundPack.get(soundName) : null;
+        if (packed != null)
+        {
+            return compression == SampleCompression.NONE ? packed
+                    : compress(soundName, packed.getSamples(), packed.getFormat(), storage, compression);
+        }
+
+        if (!soundFile.exists())
+        {
+            return null;
+        }
+
+        if (isStreamed(soundFile))
+        {
+            try (AudioInputStream stream = openStream(soundFile))
+            {
+                log.debug("Streaming {} from disk", soundName);
+                return new Sound(soundFile, stream.getFormat());
+            }
+            catch (IOException | IllegalArgumentException e)
+            {
+                log.warn("Unable to stream custom sound " + soundName, e);
+                return null;
+            }
+        }
+
+        SampleCompression sampleCompression = compression;
+        boolean useCache = cacheEnabled;
+        boolean shareCache = useCache && sharedCache && sampleCompression == SampleCompression.NONE;
+        SampleStorage sampleStorage = shareCache ? SampleStorage.MAPPED : storage;
+
+        try
+        {
+            // Without the cache a file is only hashed once it has to be told apart from another file of
+            // the same length, hashing every file would cost more than decoding it
+            String hash = useCache ? cache.hashOf(soundFile) : null;
+            if (!shareSounds)
+            {
+                return decodeSound(soundName, soundFile, hash, sampleStorage, sampleCompression, useCache);
+            }
+
+            return loadShared(soundName, soundFile, hash, sampleStorage, sampleCompression, useCache);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to load custom sound " + soundName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Ids whose files have the same content share one copy of the samples, in both libraries. Files are
+     * hashed and decoded without holding the list of their length, so loads of other files of the same
+     * length are not held up. Two loads of identical files may both decode, only the first to finish
+     * hands out its samples.
+     */
+    private Sound loadShared(String soundName, File soundFile, String hash, SampleStorage sampleStorage,
+                             SampleCompression sampleCompression, boolean useCache) throws IOException
+    {
+        pruneSharedSounds();
+
+        long length = soundFile.length();
+        long modified = soundFile.lastModified();
+        String settings = sampleStorage + "/" + sampleCompression;
+        Set<SharedSound> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+        Sound sound = null;
+        SharedSound shared = null;
+        while (true)
+        {
+            List<SharedSound> unchecked = new ArrayList<>();
+            List<SharedSound> candidates = sharedSounds.get(length);
+            if (candidates == null && shared != null)
+            {
+                candidates = sharedSounds.computeIfAbsent(length, k -> new ArrayList<>());
+            }
+
+            if (candidates != null)
+            {
+                synchronized (candidates)
+                {
+                    // Emptied lists are taken out of the map, only the one in it may be added to
+                    if (sharedSounds.get(length) != candidates)
+                    {
+                        continue;
+                    }
+
+                    for (SharedSound candidate : candidates)
+                    {
+                        if (candidate.settings.equals(settings) && candidate.get() != null && checked.add(candidate))
+                        {
+                            unchecked.add(candidate);
+                        }
+                    }
+
+                    if (unchecked.isEmpty() && shared != null)
+                    {
+                        candidates.add(shared);
+                        return sound;
+                    }
+                }
+            }
+
+            // The same file needs no hashing to be told apart
+            unchecked.sort(Comparator.comparing(candidate -> !candidate.isFile(soundFile, modified)));
+            for (SharedSound candidate : unchecked)
+            {
+                if (!candidate.isFile(soundFile, modified))
+                {
+                    if (hash == null)
+                    {
+                        hash = SampleCache.hash(soundFile);
+                    }
+
+                    if (!hash.equals(candidate.hash()))
+                    {
+                        continue;
+                    }
+                }
+
+                Sound candidateSound = candidate.get();
+                if (candidateSound != null)
+                {
+                    sharedLoads.incrementAndGet();
+                    return candidateSound;
+                }
+            }
+
+            if (shared == null)
+            {
+                sound = decodeSound(soundName, soundFile, hash, sampleStorage, sampleCompression, useCache);
+                if (sound == null)
+                {
+                    return null;
+                }
+                shared = new SharedSound(soundFile, length, modified, settings, hash, sound, clearedSounds);
+            }
+        }
+    }
+
+    /**
+     * Drops the entries whose samples were collected, and the lists of lengths left without entries.
+     */
+    private void pruneSharedSounds()
+    {
+        Reference<? extends Sound> cleared;
+        while ((cleared = clearedSounds.poll()) != null)
+        {
+            SharedSound shared = (SharedSound) cleared;
+            List<SharedSound> candidates = sharedSounds.get(shared.length);
+            if (candidates == null)
+            {
+                continue;
+            }
+
+            synchronized (candidates)
+            {
+                candidates.remove(shared);
+                if (candidates.isEmpty())
+                {
+                    sharedSounds.remove(shared.length, candidates);
+                }
+            }
+        }
+    }
+
+    private Sound decodeSound(String soundName, File soundFile, String hash, SampleStorage sampleStorage,
+                              SampleCompression sampleCompression, boolean useCache)
+    {
+        if (useCache)
+        {
+            // Samples that are compressed afterwards are read straight from the mapped cache file
+            Sound cached = cache.get(soundFile, sampleCompression == SampleCompression.NONE ? sampleStorage : SampleStorage.MAPPED);
+            if (cached != null)
+            {
+                return sampleCompression == SampleCompression.NONE ? cached
+                        : compress(soundName, cached.getSamples(), cached.getFormat(), sampleStorage, sampleCompression);
+            }
+        }
+
+        try
+        {
+            Decoded decoded = decodeFile(soundName, soundFile);
+
+            if (useCache)
+            {
+                cache.put(soundFile, hash, decoded.format, decoded.bytes, decoded.length);
+                if (sampleCompression == SampleCompression.NONE && sampleStorage == SampleStorage.MAPPED)
+                {
+                    // Map the file just written rather than keeping a private copy of the same samples
+                    Sound cached = cache.get(soundFile, SampleStorage.MAPPED);
+                    if (cached != null)
+                    {
+                        return cached;
+                    }
+                }
+            }
+
+            if (sampleCompression != SampleCompression.NONE)
+            {
+                return compress(soundName, ByteBuffer.wrap(decoded.bytes, 0, decoded.length), decoded.format, sampleStorage, sampleCompression);
+            }
+
+            return new Sound(sampleStorage.store(decoded.bytes, decoded.length), decoded.format);
+        }
+        catch (UnsupportedAudioFileException | IOException e)
+        {
+            log.warn("Unable to load custom sound " + soundName, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Opens the newest sound pack in the SoundSwapper folder, if there is one. Sounds in the pack are
+     * loaded from it in preference to their own files.
+     */
+    void openPack()
+    {
+        File packFile = SoundPack.latest(directory);
+        if (packFile == null)
+        {
+            pack = null;
+            return;
+        }
+
+        try
+        {
+            pack = SoundPack.open(packFile);
+            log.debug("Opened sound pack {} with {} sounds", packFile.getName(), pack.size());
+            SoundPack.deleteOutdated(directory);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            pack = null;
+            log.warn("Unable to open sound pack " + packFile, e);
+        }
+    }
+
+    /**
+     * Packs every sound in the SoundSwapper folder into a new sound pack in the background and opens it.
+     *
+     * @return a future completed with the number of sounds packed
+     */
+    CompletableFuture<Integer> buildPack()
+    {
+        return CompletableFuture.supplyAsync(() ->
+        {
+            try
+            {
+                int count = SoundPack.build(directory, this::decodeForPack);
+                openPack();
+                return count;
+            }
+            catch (IOException e)
+            {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private Sound decodeForPack(File soundFile)
+    {
+        String fileName = soundFile.getName();
+        String soundName = fileName.substring(0, fileName.length() - 4);
+
+        // Long sounds keep streaming from their own file
+        if (isStreamed(soundFile))
+        {
+            return null;
+        }
+
+        try
+        {
+            Decoded decoded = decodeFile(soundName, soundFile);
+            return new Sound(ByteBuffer.wrap(decoded.bytes, 0, decoded.length), decoded.format);
+        }
+        catch (UnsupportedAudioFileException | IOException e)
+        {
+            log.warn("Unable to pack custom sound " + soundName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the whole sound file and converts it to the mixer format where possible.
+     */
+    private Decoded decodeFile(String soundName, File soundFile) throws UnsupportedAudioFileException, IOException
+    {
+        Decoded decoded = wavParser ? readWav(soundFile) : null;
+        if (decoded == null)
+        {
+            try (InputStream fileStream = new BufferedInputStream(new FileInputStream(soundFile));
+                AudioInputStream stream = decode(AudioSystem.getAudioInputStream(fileStream)))
+            {
+                byte[] bytes = readFully(stream);
+                decoded = new Decoded(stream.getFormat(), bytes, bytes.length);
+            }
+        }
+
+        AudioFormat format = decoded.format;
+        if (SampleConverter.isMixerFormat(format))
+        {
+            return decoded;
+        }
+
+        if (!SampleConverter.canConvert(format))
+        {
+            // Read as signed PCM these samples would play as noise, left as they are they can still play on a clip
+            log.debug("Unable to convert {} from {}, it will play on a clip", soundName, format);
+            return decoded;
+        }
+
+        long start = System.nanoTime();
+        byte[] converted = SampleConverter.toMixerFormat(format, decoded.bytes, decoded.length);
+        long elapsed = System.nanoTime() - start;
+
+        conversions.incrementAndGet();
+        conversionNanos.addAndGet(elapsed);
+        sourceBytes.addAndGet(decoded.length);
+        convertedBytes.addAndGet(converted.length);
+        log.debug("Converted {} from {} in {}us, {} bytes to {} bytes", soundName, format, elapsed / 1000, decoded.length, converted.length);
+
+        return new Decoded(SoundMixer.FORMAT, converted, converted.length);
+    }
+
+    /**
+     * Reads a PCM or float wav with a single read of its data chunk.
+     *
+     * @return the samples, or null if the file has to be read through AudioSystem
+     */
+    private static Decoded readWav(File soundFile) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(soundFile.toPath(), StandardOpenOption.READ))
+        {
+            WavFile wav = WavFile.parse(channel);
+            if (wav == null)
+            {
+                return null;
+            }
+
+            if (wav.getDataLength() > MAX_SOUND_BYTES)
+            {
+                throw new IOException("Sound is too large to load into memory (" + wav.getDataLength() + " bytes), lower the streaming threshold to play it");
+            }
+
+            byte[] bytes = wav.readData(channel);
+            return new Decoded(wav.getFormat(), bytes, bytes.length);
+        }
+    }
+
+    private Sound compress(String soundName, ByteBuffer pcm, AudioFormat format, SampleStorage sampleStorage,
+        SampleCompression sampleCompression)
+    {
+        if (!SampleConverter.isMixerFormat(format))
+        {
+            return new Sound(sampleStorage.adopt(pcm), format);
+        }
+
+        long start = System.nanoTime();
+        byte[] encoded = sampleCompression.encode(pcm);
+        long elapsed = System.nanoTime() - start;
+
+        if (log.isDebugEnabled())
+        {
+            double snr = SampleCompression.signalToNoise(pcm, sampleCompression.decode(ByteBuffer.wrap(encoded)));
+            log.debug("Compressed {} with {} in {}us, {} bytes to {} bytes, {} dB SNR", soundName, sampleCompression,
+                    elapsed / 1000, pcm.remaining(), encoded.length, String.format("%.1f", snr));
+        }
+
+        return new Sound(sampleStorage.store(encoded, encoded.length), format, sampleCompression);
+    }
+
+    /**
+     * @return true if the sound is longer than the streaming threshold
+     */
+    private boolean isStreamed(File soundFile)
+    {
+        int threshold = streamingThreshold;
+        if (threshold <= 0)
+        {
+            return false;
+        }
+
+        try
+        {
+            long frames;
+            float frameRate;
+            WavFile wav = wavParser ? parseWav(soundFile) : null;
+            if (wav != null)
+            {
+                frames = wav.getFrameLength();
+                frameRate = wav.getFormat().getFrameRate();
+            }
+            else
+            {
+                AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(soundFile);
+                frames = fileFormat.getFrameLength();
+                frameRate = fileFormat.getFormat().getFrameRate();
+            }
+            return frames > 0 && frameRate > 0 && frames / frameRate > threshold;
+        }
+        catch (UnsupportedAudioFileException | IOException e)
+        {
+            return false;
+        }
+    }
+
+    private static WavFile parseWav(File soundFile) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(soundFile.toPath(), StandardOpenOption.READ))
+        {
+            return WavFile.parse(channel);
+        }
+    }
+
+    /**
+     * Opens the sound file as a stream in the mixer format, converting while it is read.
+     */
+    static AudioInputStream openStream(File soundFile) throws IOException
+    {
+        AudioInputStream stream;
+        try
+        {
+            stream = decode(AudioSystem.getAudioInputStream(new BufferedInputStream(new FileInputStream(soundFile))));
+        }
+        catch (UnsupportedAudioFileException e)
+        {
+            throw new IOException(e);
+        }
+
+        if (stream.getFormat().matches(SoundMixer.FORMAT))
+        {
+            return stream;
+        }
+
+        try
+        {
+            return AudioSystem.getAudioInputStream(SoundMixer.FORMAT, stream);
+        }
+        catch (IllegalArgumentException e)
+        {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the whole stream. The stream's frame length is only used to size the buffer, a stream
+     * that ends early gives a shorter array.
+     */
+    private static byte[] readFully(AudioInputStream stream) throws IOException
+    {
+        long frames = stream.getFrameLength();
+        long length = frames * stream.getFormat().getFrameSize();
+
+        if (frames == AudioSystem.NOT_SPECIFIED || length < 0)
+        {
+            return stream.readAllBytes();
+        }
+
+        if (length > MAX_SOUND_BYTES)
+        {
+            throw new IOException("Sound is too large to load into memory (" + length + " bytes), lower the streaming threshold to play it");
+        }
+
+        byte[] bytes = new byte[(int) length];
+        int offset = 0;
+        int read;
+        while (offset < bytes.length && (read = stream.read(bytes, offset, bytes.length - offset)) != -1)
+        {
+            offset += read;
+        }
+
+        return offset == bytes.length ? bytes : Arrays.copyOf(bytes, offset);
+    }
+
+    /**
+     * Decodes compressed encodings such as mu-law to plain PCM so they can be converted to the
+     * mixer format, formats that are already PCM are returned as they are.
+     */
+    private static AudioInputStream decode(AudioInputStream stream)
+    {
+        if (SampleConverter.canConvert(stream.getFormat()))
+        {
+            return stream;
+        }
+
+        AudioFormat source = stream.getFormat();
+        AudioFormat pcm = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+        if (AudioSystem.isConversionSupported(pcm, source))
+        {
+            return AudioSystem.getAudioInputStream(pcm, stream);
+        }
+        return stream;
+    }
+
+    /**
+     * @return how long each load took, including cache hits, packed sounds and failures
+     */
+    LatencyHistogram getLoadTimes()
+    {
+        return loadTimes;
+    }
+
+    /**
+     * @return how many loads reused the samples of another id with an identical sound file
+     */
+    long getSharedLoads()
+    {
+        return sharedLoads.get();
+    }
+
+    long getConversions()
+    {
+        return conversions.get();
+    }
+
+    long getConversionNanos()
+    {
+        return conversionNanos.get();
+    }
+
+    /**
+     * @return the size of every converted sound as decoded from its file
+     */
+    long getSourceBytes()
+    {
+        return sourceBytes.get();
+    }
+
+    /**
+     * @return the size of every converted sound in the mixer format, which no longer has to be converted
+     * on each play
+     */
+    long getConvertedBytes()
+    {
+        return convertedBytes.get();
+    }
+
+    private static final class Decoded
+    {
+        private final AudioFormat format;
+        private final byte[] bytes;
+        private final int length;
+
+        private Decoded(AudioFormat format, byte[] bytes, int length)
+        {
+            this.format = format;
+            this.bytes = bytes;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Weakly holds the samples decoded from one sound file, so they are dropped once no library or
+     * cache uses them anymore. Added to and removed from the list of its file length while holding it,
+     * the hash is computed by whichever load needs it first.
+     */
+    private static final class SharedSound extends WeakReference<Sound>
+    {
+        private final File file;
+        private final long length;
+        private final long modified;
+        private final String settings;
+        private volatile String hash;
+
+        private SharedSound(File file, long length, long modified, String settings, String hash, Sound sound,
+                            ReferenceQueue<Sound> queue)
+        {
+            super(sound, queue);
+            this.file = file;
+            this.length = length;
+            this.modified = modified;
+            this.settings = settings;
+            this.hash = hash;
+        }
+
+        boolean isFile(File other, long otherModified)
+        {
+            return file.equals(other) && modified == otherModified;
+        }
+
+        /**
+         * @return the content hash of the file the samples were decoded from, or null if the file has
+         * changed since
+         */
+        String hash() throws IOException
+        {
+            String known = hash;
+            if (known == null && file.length() == length && file.lastModified() == modified)
+            {
+                known = SampleCache.hash(file);
+                hash = known;
+            }
+            return known;
+        }
+    }
+}
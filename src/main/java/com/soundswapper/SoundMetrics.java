@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies of the event handlers and custom sound playback, plus how often each sound id was
+ * played, consumed, swapped and culled. The histograms can be recorded from any thread, the per-id
+ * counters are only touched on the client thread.
+ */
+class SoundMetrics
+{
+    static final int PLAYED = 0;
+    static final int CONSUMED = 1;
+    static final int SWAPPED = 2;
+    static final int CULLED = 3;
+    private static final int COUNTERS = 4;
+
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private final LatencyHistogram soundEffectDispatch = new LatencyHistogram();
+    private final LatencyHistogram areaSoundDispatch = new LatencyHistogram();
+    private final LatencyHistogram playStart = new LatencyHistogram();
+    private final AtomicLong lineFailures = new AtomicLong();
+
+    private int[] keys = newKeys(64);
+    private long[] counts = new long[64 * COUNTERS];
+    private int size;
+
+    LatencyHistogram getSoundEffectDispatch()
+    {
+        return soundEffectDispatch;
+    }
+
+    LatencyHistogram getAreaSoundDispatch()
+    {
+        return areaSoundDispatch;
+    }
+
+    LatencyHistogram getPlayStart()
+    {
+        return playStart;
+    }
+
+    void lineFailed()
+    {
+        lineFailures.incrementAndGet();
+    }
+
+    long getLineFailures()
+    {
+        return lineFailures.get();
+    }
+
+    /**
+     * Counts a decision from the {@link DecisionJournal} against its sound id.
+     */
+    void count(int soundId, int action)
+    {
+        int counter;
+        switch (action)
+        {
+            case DecisionJournal.CUSTOM:
+                counter = PLAYED;
+                break;
+            case DecisionJournal.CONSUMED:
+            case DecisionJournal.BLACKLISTED:
+                counter = CONSUMED;
+                break;
+            case DecisionJournal.SWAPPED:
+                counter = SWAPPED;
+                break;
+            case DecisionJournal.CULLED:
+                counter = CULLED;
+                break;
+            default:
+                return;
+        }
+
+        // Find the slot first, it may grow the table and replace the counts array
+        int slot = slotOf(soundId);
+        counts[slot * COUNTERS + counter]++;
+    }
+
+    long getCount(int soundId, int counter)
+    {
+        int mask = keys.length - 1;
+        int slot = hash(soundId) & mask;
+        int key;
+        while ((key = keys[slot]) != FREE)
+        {
+            if (key == soundId)
+            {
+                return counts[slot * COUNTERS + counter];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the counted sound ids, the busiest first
+     */
+    int[] getSoundIds()
+    {
+        long[] sorted = new long[size];
+        int n = 0;
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (keys[slot] != FREE)
+            {
+                long total = counts[slot * COUNTERS + PLAYED] + counts[slot * COUNTERS + CONSUMED] + counts[slot * COUNTERS + SWAPPED]
+                        + counts[slot * COUNTERS + CULLED];
+                // Busiest first, ties by id
+                sorted[n++] = -Math.min(total, Integer.MAX_VALUE) << 32 | keys[slot];
+            }
+        }
+        Arrays.sort(sorted);
+
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            ids[i] = (int) sorted[i];
+        }
+        return ids;
+    }
+
+    void reset()
+    {
+        soundEffectDispatch.reset();
+        areaSoundDispatch.reset();
+        playStart.reset();
+        lineFailures.set(0);
+        keys = newKeys(64);
+        counts = new long[64 * COUNTERS];
+        size = 0;
+    }
+
+    private int slotOf(int soundId)
+    {
+        int mask = keys.length - 1;
+        int slot = hash(soundId) & mask;
+        int key;
+        while ((key = keys[slot]) != FREE)
+        {
+            if (key == soundId)
+            {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if ((size + 1) * 2 > keys.length)
+        {
+            grow();
+            return slotOf(soundId);
+        }
+
+        size++;
+        keys[slot] = soundId;
+        return slot;
+    }
+
+    private void grow()
+    {
+        int[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = newKeys(oldKeys.length * 2);
+        counts = new long[keys.length * COUNTERS];
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] == FREE)
+            {
+                continue;
+            }
+
+            int slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != FREE)
+            {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            System.arraycopy(oldCounts, i * COUNTERS, counts, slot * COUNTERS, COUNTERS);
+        }
+    }
+
+    private static int[] newKeys(int capacity)
+    {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        return keys;
+    }
+
+    private static int hash(int soundId)
+    {
+        int h = soundId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Formats the percentiles of a histogram for the metrics overlay and dump.
+     */
+    static String summarize(LatencyHistogram histogram)
+    {
+        return "p50 " + LatencyHistogram.format(histogram.getValueAtPercentile(50))
+                + " p99 " + LatencyHistogram.format(histogram.getValueAtPercentile(99))
+                + " max " + LatencyHistogram.format(histogram.getMax());
+    }
+}
@@ -0,0 +1,624 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.LineUnavailableException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mixes every playing custom sound into a single output line on its own thread, so playing a sound
+ * is only a queue push and the number of open OS audio lines stays at one.
+ */
+@Slf4j
+class SoundMixer implements Runnable
+{
+    static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+
+    private static final int MAX_VOICES = 64;
+    private static final int FRAMES_PER_BUFFER = 512;
+    private static final int LINE_BUFFERS = 4;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int STREAM_READ_SIZE = 8 * 1024;
+
+    private final BlockingQueue<Voice> pending = new ArrayBlockingQueue<>(MAX_VOICES);
+    private final Voice[] voices = new Voice[MAX_VOICES];
+    private final float[] mixBuffer = new float[FRAMES_PER_BUFFER * 2];
+    private final byte[] outputBuffer = new byte[FRAMES_PER_BUFFER * FORMAT.getFrameSize()];
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private int voiceCount;
+    private volatile int activeVoices;
+    private volatile int polyphony = ClipPool.DEFAULT_POLYPHONY;
+    private volatile boolean running;
+
+    private AudioSink sink;
+    private Thread thread;
+    private ExecutorService streamer;
+
+    synchronized void start() throws LineUnavailableException
+    {
+        start(AudioSink.line());
+    }
+
+    synchronized void start(AudioSink output) throws LineUnavailableException
+    {
+        if (running)
+        {
+            return;
+        }
+
+        // Both threads would mix into the same voices and buffer
+        if (thread != null && !awaitThread())
+        {
+            throw new LineUnavailableException("The previous mixer thread has not stopped");
+        }
+
+        output.open(FORMAT, outputBuffer.length * LINE_BUFFERS);
+        sink = output;
+
+        streamer = Executors.newSingleThreadExecutor(r ->
+        {
+            Thread streamerThread = new Thread(r, "SoundSwapper Streamer");
+            streamerThread.setDaemon(true);
+            return streamerThread;
+        });
+
+        running = true;
+        thread = new Thread(this, "SoundSwapper Mixer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    synchronized void stop()
+    {
+        if (!running)
+        {
+            return;
+        }
+
+        running = false;
+        if (!awaitThread())
+        {
+            log.warn("Sound mixer thread did not stop");
+        }
+
+        pending.forEach(Voice::close);
+        pending.clear();
+        streamer.shutdown();
+        streamer = null;
+    }
+
+    /**
+     * Interrupts the mixer thread and waits for it to exit, the reference is only cleared once it has.
+     *
+     * @return true if the thread has exited
+     */
+    private boolean awaitThread()
+    {
+        for (int attempt = 0; attempt < 2 && thread.isAlive(); attempt++)
+        {
+            thread.interrupt();
+            try
+            {
+                thread.join(1000);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (thread.isAlive())
+        {
+            return false;
+        }
+
+        thread = null;
+        return true;
+    }
+
+    boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * @return true if the samples of the sound can be mixed directly into the output line
+     */
+    static boolean canMix(Sound sound)
+    {
+        if (sound.isStreamed())
+        {
+            return true;
+        }
+
+        AudioFormat format = sound.getFormat();
+        return AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())
+                && format.getSampleSizeInBits() == 16
+                && !format.isBigEndian()
+                && format.getSampleRate() == FORMAT.getSampleRate()
+                && (format.getChannels() == 1 || format.getChannels() == 2);
+    }
+
+    /**
+     * Queues the sound to start on the next mixed buffer.
+     *
+     * @return false if the mixer is not running or too many sounds are already waiting to start
+     */
+    synchronized boolean play(Sound sound, float gain)
+    {
+        if (!running)
+        {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        Voice voice;
+        if (sound.isStreamed())
+        {
+            voice = new StreamingVoice(sound, gain, streamer);
+        }
+        else if (sound.getCompression() == SampleCompression.MU_LAW)
+        {
+            voice = new MuLawVoice(sound, gain);
+        }
+        else if (sound.getCompression() == SampleCompression.IMA_ADPCM)
+        {
+            voice = new AdpcmVoice(sound, gain);
+        }
+        else
+        {
+            voice = new BufferedVoice(sound, gain);
+        }
+
+        if (!pending.offer(voice))
+        {
+            voice.close();
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    void setPolyphony(int polyphony)
+    {
+        this.polyphony = Math.max(1, polyphony);
+    }
+
+    int getActiveVoices()
+    {
+        return activeVoices;
+    }
+
+    long getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Converts a custom sound volume (0-100, or -1 for unchanged) to a linear gain, using the same
+     * decibel curve that was previously applied through the clip's master gain control.
+     */
+    static float gain(int volume)
+    {
+        if (volume == -1)
+        {
+            return 1f;
+        }
+        return (float) Math.pow(10, (volume / 2 - 45) / 20.0);
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (running)
+            {
+                if (voiceCount == 0)
+                {
+                    Voice voice = pending.poll(100, TimeUnit.MILLISECONDS);
+                    if (voice == null)
+                    {
+                        continue;
+                    }
+                    addVoice(voice);
+                }
+
+                Voice voice;
+                while ((voice = pending.poll()) != null)
+                {
+                    addVoice(voice);
+                }
+
+                activeVoices = voiceCount;
+                mix();
+                sink.write(outputBuffer, 0, outputBuffer.length);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // stopping
+        }
+        catch (RuntimeException e)
+        {
+            log.warn("Sound mixer stopped unexpectedly", e);
+            running = false;
+        }
+        finally
+        {
+            sink.close();
+            for (int i = 0; i < voiceCount; i++)
+            {
+                voices[i].close();
+                voices[i] = null;
+            }
+            voiceCount = 0;
+            activeVoices = 0;
+        }
+    }
+
+    private void addVoice(Voice voice)
+    {
+        // Restart the oldest copy of the sound instead of stacking more than the polyphony limit
+        int copies = 0;
+        int oldest = -1;
+        for (int i = 0; i < voiceCount; i++)
+        {
+            if (voices[i].sound == voice.sound)
+            {
+                copies++;
+                if (oldest == -1 || voices[i].position > voices[oldest].position)
+                {
+                    oldest = i;
+                }
+            }
+        }
+
+        if (copies >= polyphony)
+        {
+            voices[oldest].close();
+            voices[oldest] = voice;
+        }
+        else if (voiceCount < MAX_VOICES)
+        {
+            voices[voiceCount++] = voice;
+        }
+        else
+        {
+            voice.close();
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void mix()
+    {
+        float[] mix = mixBuffer;
+        Arrays.fill(mix, 0f);
+
+        for (int i = 0; i < voiceCount; )
+        {
+            if (voices[i].mixInto(mix))
+            {
+                i++;
+            }
+            else
+            {
+                voices[i].close();
+                voices[i] = voices[--voiceCount];
+                voices[voiceCount] = null;
+            }
+        }
+
+        byte[] out = outputBuffer;
+        for (int i = 0, j = 0; i < mix.length; i++, j += 2)
+        {
+            int sample = Math.round(mix[i]);
+            if (sample > Short.MAX_VALUE)
+            {
+                sample = Short.MAX_VALUE;
+            }
+            else if (sample < Short.MIN_VALUE)
+            {
+                sample = Short.MIN_VALUE;
+            }
+
+            out[j] = (byte) sample;
+            out[j + 1] = (byte) (sample >> 8);
+        }
+    }
+
+    private abstract static class Voice
+    {
+        final Sound sound;
+        final float gain;
+        int position;
+
+        Voice(Sound sound, float gain)
+        {
+            this.sound = sound;
+            this.gain = gain;
+        }
+
+        /**
+         * Adds the next buffer of this voice to the mix.
+         *
+         * @return false once the voice has played to the end
+         */
+        abstract boolean mixInto(float[] mix);
+
+        void close()
+        {
+        }
+    }
+
+    private static final class BufferedVoice extends Voice
+    {
+        private final int channels;
+
+        private BufferedVoice(Sound sound, float gain)
+        {
+            super(sound, gain);
+            this.channels = sound.getFormat().getChannels();
+        }
+
+        @Override
+        boolean mixInto(float[] mix)
+        {
+            ByteBuffer samples = sound.getSamples();
+            int end = sound.getNumBytes();
+            int pos = position;
+
+            for (int i = 0; i < mix.length && pos + 1 < end; i += 2)
+            {
+                float left = samples.getShort(pos) * gain;
+                pos += 2;
+
+                float right = left;
+                if (channels == 2 && pos + 1 < end)
+                {
+                    right = samples.getShort(pos) * gain;
+                    pos += 2;
+                }
+
+                mix[i] += left;
+                mix[i + 1] += right;
+            }
+
+            position = pos;
+            return pos + 1 < end;
+        }
+    }
+
+    /**
+     * Plays a stereo mu-law sound, one byte per sample.
+     */
+    private static final class MuLawVoice extends Voice
+    {
+        private MuLawVoice(Sound sound, float gain)
+        {
+            super(sound, gain);
+        }
+
+        @Override
+        boolean mixInto(float[] mix)
+        {
+            ByteBuffer samples = sound.getSamples();
+            int end = sound.getNumBytes() & ~1;
+            int pos = position;
+
+            for (int i = 0; i < mix.length && pos < end; i += 2, pos += 2)
+            {
+                mix[i] += SampleCompression.muLawDecode(samples.get(pos)) * gain;
+                mix[i + 1] += SampleCompression.muLawDecode(samples.get(pos + 1)) * gain;
+            }
+
+            position = pos;
+            return pos < end;
+        }
+    }
+
+    /**
+     * Plays a stereo IMA ADPCM sound, one byte per frame. The decoder state carries over between
+     * buffers so each sample is decoded exactly once.
+     */
+    private static final class AdpcmVoice extends Voice
+    {
+        private final SampleCompression.AdpcmState left = new SampleCompression.AdpcmState();
+        private final SampleCompression.AdpcmState right = new SampleCompression.AdpcmState();
+
+        private AdpcmVoice(Sound sound, float gain)
+        {
+            super(sound, gain);
+        }
+
+        @Override
+        boolean mixInto(float[] mix)
+        {
+            ByteBuffer samples = sound.getSamples();
+            int end = sound.getNumBytes();
+            int pos = position;
+
+            for (int i = 0; i < mix.length && pos < end; i += 2, pos++)
+            {
+                int b = samples.get(pos);
+                mix[i] += left.decode(b & 0x0f) * gain;
+                mix[i + 1] += right.decode((b >> 4) & 0x0f) * gain;
+            }
+
+            position = pos;
+            return pos < end;
+        }
+    }
+
+    /**
+     * Plays a sound straight from its file. A background reader keeps a small ring buffer topped up,
+     * so the memory used does not depend on the length of the sound.
+     */
+    private static final class StreamingVoice extends Voice
+    {
+        private final SampleRing ring = new SampleRing(STREAM_BUFFER_SIZE);
+        private final ExecutorService streamer;
+        private final AtomicBoolean filling = new AtomicBoolean();
+
+        private volatile boolean ended;
+        private volatile boolean closed;
+
+        // Only used on the streamer thread
+        private AudioInputStream stream;
+        private final byte[] chunk = new byte[STREAM_READ_SIZE];
+
+        private StreamingVoice(Sound sound, float gain, ExecutorService streamer)
+        {
+            super(sound, gain);
+            this.streamer = streamer;
+            requestFill();
+        }
+
+        @Override
+        boolean mixInto(float[] mix)
+        {
+            // Mix whatever has been read so far, an underrun only leaves a gap in this voice
+            int frames = Math.min(mix.length / 2, ring.available() / 4);
+            for (int frame = 0, i = 0; frame < frames; frame++, i += 2)
+            {
+                mix[i] += ring.peekShort(frame * 4) * gain;
+                mix[i + 1] += ring.peekShort(frame * 4 + 2) * gain;
+            }
+
+            ring.skip(frames * 4);
+            position += frames * 4;
+
+            if (ring.available() < ring.capacity() / 2)
+            {
+                requestFill();
+            }
+
+            return !ended || ring.available() >= 4;
+        }
+
+        @Override
+        void close()
+        {
+            closed = true;
+            try
+            {
+                streamer.execute(this::closeStream);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // the streamer has stopped and closed nothing new since
+            }
+        }
+
+        private void requestFill()
+        {
+            if (!ended && !closed && filling.compareAndSet(false, true))
+            {
+                try
+                {
+                    streamer.execute(this::fill);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    ended = true;
+                }
+            }
+        }
+
+        private void fill()
+        {
+            try
+            {
+                if (closed)
+                {
+                    return;
+                }
+
+                if (stream == null)
+                {
+                    stream = SoundLoader.openStream(sound.getStreamFile());
+                }
+
+                int free;
+                while (!closed && (free = ring.capacity() - ring.available()) >= 4)
+                {
+                    int read = stream.read(chunk, 0, Math.min(chunk.length, free & ~3));
+                    if (read == -1)
+                    {
+                        ended = true;
+                        closeStream();
+                        break;
+                    }
+
+                    ring.write(chunk, 0, read);
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                log.warn("Unable to stream custom sound {}", sound.getStreamFile().getName(), e);
+                ended = true;
+                closeStream();
+            }
+            finally
+            {
+                filling.set(false);
+            }
+        }
+
+        private void closeStream()
+        {
+            if (stream != null)
+            {
+                try
+                {
+                    stream.close();
+                }
+                catch (IOException e)
+                {
+                    log.debug("Unable to close streamed sound", e);
+                }
+                stream = null;
+            }
+        }
+    }
+}
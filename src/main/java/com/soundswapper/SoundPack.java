@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single file holding every sound of the SoundSwapper folder already decoded to the mixer
+ * format, so startup maps one file instead of opening and parsing each wav. The file starts with
+ * an index of sound name, offset, length and format, followed by the sample data.
+ * <p>
+ * Loaded sounds are slices of the pack's mapping, and Windows refuses to replace or delete a mapped
+ * file. Every build therefore writes a new sounds-&lt;generation&gt;.pack, the newest one is used and
+ * older ones are deleted once nothing maps them anymore.
+ */
+@Slf4j
+class SoundPack
+{
+    static final String FILE_PREFIX = "sounds";
+    static final String FILE_EXTENSION = ".pack";
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final int MAGIC = 0x5353504b;
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 4;
+
+    private final File file;
+    private final long modified;
+    private final Map<String, Sound> sounds;
+
+    private SoundPack(File file, long modified, Map<String, Sound> sounds)
+    {
+        this.file = file;
+        this.modified = modified;
+        this.sounds = sounds;
+    }
+
+    /**
+     * Maps the pack file and indexes its sounds. Every sound is a slice of the one mapping.
+     */
+    static SoundPack open(File file) throws IOException
+    {
+        long modified = file.lastModified();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // Slices keep the mapping reachable, once the last one is gone an outdated pack can be deleted
+            CLEANER.register(mapped, () -> deleteIfOutdated(file));
+            if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION)
+            {
+                throw new IOException("Not a sound pack or from a different version");
+            }
+
+            int count = mapped.getInt();
+            Map<String, Sound> sounds = new HashMap<>(count * 2);
+            Map<Long, Sound> byOffset = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++)
+            {
+                String name = readString(mapped);
+                long offset = mapped.getLong();
+                int length = mapped.getInt();
+                AudioFormat format = new AudioFormat(mapped.getFloat(), mapped.getInt(), mapped.getInt(), true, mapped.get() != 0);
+
+                if (offset < 0 || offset + length > mapped.capacity())
+                {
+                    throw new IOException("Sound pack entry " + name + " is out of bounds");
+                }
+
+                // Sounds with identical files were packed once and share the same Sound
+                Sound sound = byOffset.get(offset);
+                if (sound == null)
+                {
+                    ByteBuffer samples = mapped.duplicate();
+                    samples.position((int) offset).limit((int) offset + length);
+                    sound = new Sound(samples.slice(), format);
+                    byOffset.put(offset, sound);
+                }
+                sounds.put(name, sound);
+            }
+
+            return new SoundPack(file, modified, Collections.unmodifiableMap(sounds));
+        }
+    }
+
+    /**
+     * @return the packed sound, or null if the pack does not have it or the sound file has changed
+     * since the pack was built
+     */
+    Sound get(String name)
+    {
+        Sound sound = sounds.get(name);
+        if (sound == null)
+        {
+            return null;
+        }
+
+        File source = new File(file.getParentFile(), name + ".wav");
+        if (source.exists() && source.lastModified() > modified)
+        {
+            return null;
+        }
+
+        return sound;
+    }
+
+    boolean contains(String name)
+    {
+        return sounds.containsKey(name);
+    }
+
+    int size()
+    {
+        return sounds.size();
+    }
+
+    interface Decoder
+    {
+        /**
+         * @return the sound decoded to the mixer format on the heap, or null if it could not be decoded
+         */
+        Sound decode(File soundFile);
+    }
+
+    /**
+     * @return the newest pack in the directory, or null if there is none
+     */
+    static File latest(File directory)
+    {
+        File[] packs = list(directory);
+        File latest = null;
+        for (File pack : packs)
+        {
+            if (latest == null || generation(pack) > generation(latest))
+            {
+                latest = pack;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes every pack older than the newest. A pack that is still mapped, which Windows does not
+     * allow to be deleted, is deleted by a later call or once its mapping is collected.
+     */
+    static void deleteOutdated(File directory)
+    {
+        for (File pack : list(directory))
+        {
+            deleteIfOutdated(pack);
+        }
+    }
+
+    private static void deleteIfOutdated(File pack)
+    {
+        File latest = latest(pack.getParentFile());
+        if (latest != null && !latest.equals(pack) && pack.exists() && !pack.delete())
+        {
+            log.debug("Outdated sound pack {} is still in use", pack.getName());
+        }
+    }
+
+    private static File[] list(File directory)
+    {
+        File[] packs = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_EXTENSION)
+                && generation(name) >= 0);
+        return packs != null ? packs : new File[0];
+    }
+
+    private static long generation(File pack)
+    {
+        return generation(pack.getName());
+    }
+
+    /**
+     * @return the generation in a sounds-&lt;generation&gt;.pack name, 0 for the unversioned sounds.pack
+     * of earlier builds or -1 if the name is not a pack name
+     */
+    private static long generation(String name)
+    {
+        String middle = name.substring(FILE_PREFIX.length(), name.length() - FILE_EXTENSION.length());
+        if (middle.isEmpty())
+        {
+            return 0;
+        }
+
+        try
+        {
+            return middle.startsWith("-") ? Long.parseLong(middle.substring(1)) : -1;
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Decodes every wav in the directory and writes them into a new pack file, which becomes the
+     * newest pack in the directory. Wavs with the same
+     * content are decoded and stored once, their index entries point at the same samples.
+     *
+     * @return the number of sounds packed
+     */
+    static int build(File directory, Decoder decoder) throws IOException
+    {
+        File[] files = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".wav"));
+        List<String> names = new ArrayList<>();
+        if (files != null)
+        {
+            for (File soundFile : files)
+            {
+                String fileName = soundFile.getName();
+                names.add(fileName.substring(0, fileName.length() - 4));
+            }
+        }
+
+        long headerSize = 12;
+        for (String name : names)
+        {
+            headerSize += 2 + name.getBytes(StandardCharsets.UTF_8).length + 8 + 4 + 4 + 4 + 4 + 1;
+        }
+
+        File latest = latest(directory);
+        long generation = Math.max(System.currentTimeMillis(), latest != null ? generation(latest) + 1 : 0);
+        File packFile = new File(directory, FILE_PREFIX + "-" + generation + FILE_EXTENSION);
+        File temp = new File(directory, packFile.getName() + ".tmp");
+        ByteBuffer header = ByteBuffer.allocate((int) headerSize);
+        header.putInt(MAGIC).putInt(VERSION).putInt(0);
+
+        int count = 0;
+        Map<String, Packed> packed = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            long offset = align(headerSize);
+            for (String name : names)
+            {
+                File soundFile = new File(directory, name + ".wav");
+                String hash = SampleCache.hash(soundFile);
+                Packed entry = packed.get(hash);
+                if (entry == null)
+                {
+                    Sound sound = decoder.decode(soundFile);
+                    if (sound == null || sound.isStreamed())
+                    {
+                        continue;
+                    }
+
+                    ByteBuffer samples = sound.getSamples().duplicate();
+                    int length = samples.remaining();
+                    if (offset + length > Integer.MAX_VALUE)
+                    {
+                        log.warn("Sound pack is full, {} is left out", name);
+                        continue;
+                    }
+
+                    channel.position(offset);
+                    while (samples.hasRemaining())
+                    {
+                        channel.write(samples);
+                    }
+
+                    entry = new Packed(offset, length, sound.getFormat());
+                    packed.put(hash, entry);
+                    offset = align(offset + length);
+                }
+
+                AudioFormat format = entry.format;
+                byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                header.putShort((short) nameBytes.length).put(nameBytes)
+                        .putLong(entry.offset)
+                        .putInt(entry.length)
+                        .putFloat(format.getSampleRate())
+                        .putInt(format.getSampleSizeInBits())
+                        .putInt(format.getChannels())
+                        .put((byte) (format.isBigEndian() ? 1 : 0));
+
+                count++;
+            }
+
+            header.putInt(8, count);
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining())
+            {
+                channel.write(header);
+            }
+        }
+
+        // A new name, the pack in use is never replaced while it is mapped
+        Files.move(temp.toPath(), packFile.toPath());
+        log.debug("Packed {} sounds, {} distinct, into {}", count, packed.size(), packFile.getName());
+        return count;
+    }
+
+    private static long align(long offset)
+    {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Packed
+    {
+        private final long offset;
+        private final int length;
+        private final AudioFormat format;
+
+        private Packed(long offset, int length, AudioFormat format)
+        {
+            this.offset = offset;
+            this.length = length;
+            this.format = format;
+        }
+    }
+}
@@ -53,6 +53,13 @@ public interface SoundSwapperConfig extends Config
             position = 3
     )
     String SIMPLE_ID_SWAPS_SECTION = "nativeSoundIdSwaps";
+
+    @ConfigSection(
+            name = "Playback",
+            description = "Configuration settings for how custom sounds are played",
+            position = 4
+    )
+    String PLAYBACK_SECTION = "playback";
     /**
      * Config Items
      */
@@ -69,6 +76,7 @@ public interface SoundSwapperConfig extends Config
             keyName = "customSounds",
             name = "Custom Sounds",
             description = "Area Sounds to replace with your own custom .wav files. Separate with comma.<br>" +
+                    "Write id:name to play name.wav, so several ids can share one file.<br>" +
                     "Sound List: https://oldschool.runescape.wiki/w/List_of_in-game_sound_IDs",
             position = 2,
             section = SOUND_EFFECTS_SECTION
@@ -148,6 +156,7 @@ public interface SoundSwapperConfig extends Config
             keyName = "customAreaSounds",
             name = "Custom Area Sounds",
             description = "Area Sounds to replace with your own custom .wav files. Separate with comma.<br>" +
+                    "Write id:name to play name.wav, so several ids can share one file.<br>" +
                     "Sound List: https://oldschool.runescape.wiki/w/List_of_in-game_sound_IDs",
             position = 2,
             section = AREA_SOUND_EFFECTS_SECTION
@@ -224,6 +233,32 @@ public interface SoundSwapperConfig extends Config
     )
     default boolean consumeAmbientSounds() { return false; }
 
+    @ConfigItem(
+            keyName = "whitelistAmbientSounds",
+            name = "Whitelist Ambient Sounds",
+            description = "Ambient sound ids allowed to bypass the 'Consume Ambient Sounds' config option<br>" +
+                    "Format: 123,456,789",
+            position = 9,
+            section = AREA_SOUND_EFFECTS_SECTION
+    )
+    default String whitelistAmbientSounds()
+    {
+        return "";
+    }
+
+    @ConfigItem(
+            keyName = "blacklistedAmbientSounds",
+            name = "Blacklist Ambient Sounds",
+            description = "Ambient sound ids consumed regardless of the 'Consume Ambient Sounds' config option being enabled<br>" +
+                    "Format: 123,456,789",
+            position = 10,
+            section = AREA_SOUND_EFFECTS_SECTION
+    )
+    default String blacklistedAmbientSounds()
+    {
+        return "";
+    }
+
     @ConfigItem(
             keyName = "debugSoundEffects",
             name = "Debug Sounds Effects",
@@ -234,6 +269,22 @@ public interface SoundSwapperConfig extends Config
             position = 98
     )
     default boolean debugSoundEffects() { return false; }
+
+    @ConfigItem(
+            keyName = "showMetrics",
+            name = "Show Performance Metrics",
+            description = "Shows how long the plugin takes to handle sound events, load and start custom sounds, and which sounds it handles most",
+            position = 99
+    )
+    default boolean showMetrics() { return false; }
+
+    @ConfigItem(
+            keyName = "dumpMetrics",
+            name = "Dump Performance Metrics",
+            description = "Writes the performance metrics to a metrics file in the SoundSwapper folder",
+            position = 100
+    )
+    default boolean dumpMetrics() { return false; }
     @ConfigItem(
             keyName = "nativeSoundIDSwapEnable",
             name = "Enable Native ID Swaps",
@@ -265,4 +316,139 @@ public interface SoundSwapperConfig extends Config
     {
         return "";
     }
+
+    @Range(min = 1, max = 16)
+    @ConfigItem(
+            keyName = "customSoundVoices",
+            name = "Voices Per Sound",
+            description = "How many copies of the same custom sound can play over each other at once",
+            position = 1,
+            section = PLAYBACK_SECTION
+    )
+    default int customSoundVoices()
+    {
+        return ClipPool.DEFAULT_POLYPHONY;
+    }
+
+    @ConfigItem(
+            keyName = "sampleStorage",
+            name = "Sample Storage",
+            description = "Where the decoded custom sounds are kept in memory<br>" +
+                    "Off-heap and memory mapped storage keep large sound packs out of the client's heap<br>" +
+                    "Memory mapped sounds are mapped from the decoded sound cache or the sound pack, others are kept off-heap",
+            position = 2,
+            section = PLAYBACK_SECTION
+    )
+    default SampleStorage sampleStorage()
+    {
+        return SampleStorage.HEAP;
+    }
+
+    @ConfigItem(
+            keyName = "cacheDecodedSounds",
+            name = "Cache Decoded Sounds",
+            description = "Keep decoded copies of custom sounds in the SoundSwapper folder so they load faster next time",
+            position = 3,
+            section = PLAYBACK_SECTION
+    )
+    default boolean cacheDecodedSounds() { return true; }
+
+    @Range(min = 16, max = 8192)
+    @ConfigItem(
+            keyName = "sampleCacheSize",
+            name = "Sound Cache Size (MB)",
+            description = "The most disk space the decoded sound cache may use, in megabytes",
+            position = 4,
+            section = PLAYBACK_SECTION
+    )
+    default int sampleCacheSize()
+    {
+        return SampleCache.DEFAULT_MAX_MB;
+    }
+
+    @ConfigItem(
+            keyName = "reloadChangedSounds",
+            name = "Reload Changed Files",
+            description = "Reload custom sounds as soon as their .wav file in the SoundSwapper folder is added, changed or deleted",
+            position = 5,
+            section = PLAYBACK_SECTION
+    )
+    default boolean reloadChangedSounds() { return true; }
+
+    @ConfigItem(
+            keyName = "lazyLoading",
+            name = "Load Sounds On First Play",
+            description = "Only load a custom sound the first time it plays instead of loading every sound at startup<br>" +
+                    "The first play of each sound starts once it has loaded",
+            position = 6,
+            section = PLAYBACK_SECTION
+    )
+    default boolean lazyLoading() { return false; }
+
+    @Range(min = 1, max = 4096)
+    @ConfigItem(
+            keyName = "lazyLoadingBudget",
+            name = "Loaded Sounds Memory (MB)",
+            description = "With 'Load Sounds On First Play' enabled, the least recently played sounds are unloaded once<br>" +
+                    "the loaded sounds take more than this many megabytes",
+            position = 7,
+            section = PLAYBACK_SECTION
+    )
+    default int lazyLoadingBudget()
+    {
+        return ResidentSoundCache.DEFAULT_BUDGET_MB;
+    }
+
+    @Range(max = 600)
+    @ConfigItem(
+            keyName = "streamingThreshold",
+            name = "Stream Sounds Longer Than (s)",
+            description = "Custom sounds longer than this many seconds are played straight from disk instead of being<br>" +
+                    "loaded into memory. Set to 0 to load every sound into memory",
+            position = 8,
+            section = PLAYBACK_SECTION
+    )
+    default int streamingThreshold()
+    {
+        return SoundLoader.DEFAULT_STREAMING_THRESHOLD;
+    }
+
+    @ConfigItem(
+            keyName = "sampleCompression",
+            name = "Sample Compression",
+            description = "Keep loaded custom sounds compressed in memory and decode them while they play<br>" +
+                    "mu-law halves the memory used with little loss, IMA ADPCM quarters it with some audible noise",
+            position = 9,
+            section = PLAYBACK_SECTION
+    )
+    default SampleCompression sampleCompression()
+    {
+        return SampleCompression.NONE;
+    }
+
+    @ConfigItem(
+            keyName = "buildSoundPack",
+            name = "Build Sound Pack",
+            description = "Packs every sound in the SoundSwapper folder into a single pack file that loads without decoding.<br>" +
+                    "Sounds changed after packing are read from their own file until the pack is rebuilt.",
+            position = 10,
+            section = PLAYBACK_SECTION
+    )
+    default boolean buildSoundPack()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+            keyName = "shareSoundCache",
+            name = "Share Sound Cache",
+            description = "Play uncompressed custom sounds straight from the sound cache files instead of a private copy,<br>" +
+                    "so every client on this computer shares one copy of the sounds in memory. Needs Cache Decoded Sounds.",
+            position = 11,
+            section = PLAYBACK_SECTION
+    )
+    default boolean shareSoundCache()
+    {
+        return false;
+    }
 }
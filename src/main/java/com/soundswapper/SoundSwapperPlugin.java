@@ -27,30 +27,31 @@ package com.soundswapper;
 
 import com.google.inject.Provides;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
 import net.runelite.api.GameState;
-import net.runelite.api.Preferences;
-import net.runelite.api.SoundEffectVolume;
+import net.runelite.api.Player;
+import net.runelite.api.coords.LocalPoint;
 import net.runelite.api.events.AreaSoundEffectPlayed;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.SoundEffectPlayed;
 import net.runelite.client.RuneLite;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
-import net.runelite.client.eventbus.EventBus;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.overlay.OverlayManager;
-import net.runelite.client.util.Text;
 
 import javax.inject.Inject;
 import javax.sound.sampled.*;
-import java.io.*;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @PluginDescriptor(
@@ -68,10 +69,10 @@ public class SoundSwapperPlugin extends Plugin
     private ClientThread clientThread;
 
     @Inject
-    private EventBus eventBus;
+    private SoundSwapperConfig config;
 
     @Inject
-    private SoundSwapperConfig config;
+    private ConfigManager configManager;
 
     @Inject
     private OverlayManager overlayManager;
@@ -79,20 +80,52 @@ public class SoundSwapperPlugin extends Plugin
     @Inject
     private SoundEffectOverlay soundEffectOverlay;
 
-    public HashMap<Integer, Sound> customSounds = new HashMap<>();
+    @Inject
+    private MetricsOverlay metricsOverlay;
 
-    public HashMap<Integer, Sound> customAreaSounds = new HashMap<>();
+    private static final File SOUND_DIR = new File(RuneLite.RUNELITE_DIR, "SoundSwapper");
 
-    public List<Integer> whitelistedSounds = new ArrayList<>();
-    public List<Integer> whitelistedAreaSounds = new ArrayList<>();
-    public List<Integer> blacklistedSounds = new ArrayList<>();
-    public List<Integer> blacklistedAreaSounds = new ArrayList<>();
-    public List<Integer> nativeSoundIDsToSwap = new ArrayList<>();
-    public List<Integer> nativeSoundIDReplacements = new ArrayList<>();
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
 
-    private static final File SOUND_DIR = new File(RuneLite.RUNELITE_DIR, "SoundSwapper");
+    private final File soundDirectory;
+
+    private final ClipPool clipPool = new ClipPool();
+    private final SoundMixer mixer = new SoundMixer();
+    // Created on every start up, the loader threads are stopped when the plugin shuts down
+    private SoundLoader soundLoader;
+
+    private ResidentSoundCache residentSounds;
+
+    private SoundLibrary customSounds;
+    private SoundLibrary customAreaSounds;
+
+    private final DecisionJournal journal = new DecisionJournal(DecisionJournal.DEFAULT_CAPACITY);
+    private final SoundMetrics metrics = new SoundMetrics();
+
+    private final AmbientSoundFilter ambientSoundFilter = new AmbientSoundFilter();
+
+    private final SoundDirectoryWatcher soundDirectoryWatcher;
+
+    private long playedAreaSounds;
+    private long culledAreaSounds;
 
     private static final String CONFIG_GROUP = "soundswapper";
+    private static final long LOADER_STOP_SECONDS = 5;
+
+    public SoundSwapperPlugin()
+    {
+        this(SOUND_DIR);
+    }
+
+    /**
+     * @param soundDirectory the folder custom sounds are read from, the SoundSwapper folder in the
+     * RuneLite directory unless running outside the client
+     */
+    SoundSwapperPlugin(File soundDirectory)
+    {
+        this.soundDirectory = soundDirectory;
+        soundDirectoryWatcher = new SoundDirectoryWatcher(soundDirectory.toPath(), this::soundFileChanged);
+    }
 
     @Provides
     SoundSwapperConfig provideConfig(ConfigManager configManager)
@@ -105,9 +138,9 @@ public class SoundSwapperPlugin extends Plugin
     {
         try
         {
-            if (!SOUND_DIR.exists())
+            if (!soundDirectory.exists())
             {
-                SOUND_DIR.mkdir();
+                soundDirectory.mkdir();
             }
         }
         catch (SecurityException securityException)
@@ -115,18 +148,55 @@ public class SoundSwapperPlugin extends Plugin
             log.error("Attempted to create SoundSwapper directory and a security exception prompted a fault");
         }
 
+        startLoader();
+
+        // Started before any sound loads, so that only sounds the mixer cannot play get a clip opened
+        try
+        {
+            mixer.start();
+        }
+        catch (LineUnavailableException | IllegalArgumentException e)
+        {
+            log.warn("Unable to open the sound mixer output line, custom sounds will play on separate clips", e);
+        }
+
+        applyPlaybackSettings();
         updateLists();
 
+        updateWatcher();
+
         overlayManager.add(soundEffectOverlay);
-        eventBus.register(soundEffectOverlay);
+        overlayManager.add(metricsOverlay);
+
+        clientThread.invokeLater(this::applyAmbientFilter);
     }
 
     @Override
     protected void shutDown() throws Exception
     {
-        eventBus.unregister(soundEffectOverlay);
         overlayManager.remove(soundEffectOverlay);
+        overlayManager.remove(metricsOverlay);
+        soundDirectoryWatcher.stop();
+        mixer.stop();
+        stopLoader();
+
+        // Put back every ambient sound that was taken out of the current scene
+        clientThread.invokeLater(() ->
+        {
+            if (client.getGameState() == GameState.LOGGED_IN)
+            {
+                ambientSoundFilter.apply(client.getAmbientSoundEffects(), ConfigSnapshot.EMPTY);
+            }
+            ambientSoundFilter.reset();
+        });
+        log.debug("Lazily loaded sounds hits: {}, misses: {}, evictions: {}, resident: {} bytes", residentSounds.getHits(),
+                residentSounds.getMisses(), residentSounds.getEvictions(), residentSounds.getResidentBytes());
         reset();
+        log.debug("Custom area sounds played: {}, culled out of range: {}", playedAreaSounds, culledAreaSounds);
+        log.debug("Clip pool hits: {}, misses: {}, exhausted: {}", clipPool.getHits(), clipPool.getMisses(), clipPool.getExhausted());
+        log.debug("Converted {} sounds in {}ms, {} bytes to {} bytes", soundLoader.getConversions(),
+                soundLoader.getConversionNanos() / 1_000_000, soundLoader.getSourceBytes(), soundLoader.getConvertedBytes());
+        log.debug("Loads sharing the samples of an identical sound file: {}", soundLoader.getSharedLoads());
     }
 
     @Subscribe
@@ -141,336 +211,545 @@ public class SoundSwapperPlugin extends Plugin
         {
             case "customSounds":
             {
-                updateSoundList(customSounds, event.getNewValue());
+                customSounds.scheduleUpdate(event.getNewValue());
                 break;
             }
 
             case "customAreaSounds":
             {
-                updateSoundList(customAreaSounds, event.getNewValue());
+                customAreaSounds.scheduleUpdate(event.getNewValue());
+                break;
+            }
+
+            case "customSoundVoices":
+            {
+                clipPool.setPolyphony(config.customSoundVoices());
+                mixer.setPolyphony(config.customSoundVoices());
+                break;
+            }
+
+            case "sampleStorage":
+            case "streamingThreshold":
+            case "sampleCompression":
+            {
+                soundLoader.setStorage(config.sampleStorage());
+                soundLoader.setStreamingThreshold(streamingThreshold());
+                soundLoader.setCompression(config.sampleCompression());
+                residentSounds.clear();
+                customSounds.reload();
+                customAreaSounds.reload();
                 break;
             }
 
-            case "whitelistSounds":
+            case "lazyLoading":
             {
-                whitelistedSounds = getIds(event.getNewValue());
+                customSounds.setLazy(config.lazyLoading());
+                customAreaSounds.setLazy(config.lazyLoading());
+                residentSounds.clear();
                 break;
             }
 
-            case "whitelistAreaSounds":
+            case "lazyLoadingBudget":
             {
-                whitelistedAreaSounds = getIds(event.getNewValue());
+                residentSounds.setBudget(config.lazyLoadingBudget() * 1024L * 1024L);
                 break;
             }
 
-            case "blacklistedSounds":
+            case "reloadChangedSounds":
             {
-                blacklistedSounds = getIds(event.getNewValue());
+                updateWatcher();
                 break;
             }
 
-            case "blacklistedAreaSounds":
+            case "cacheDecodedSounds":
+            case "sampleCacheSize":
             {
-                blacklistedAreaSounds = getIds(event.getNewValue());
+                soundLoader.setCache(config.cacheDecodedSounds(), config.sampleCacheSize(), config.shareSoundCache());
                 break;
             }
 
-            case "consumeAmbientSounds": {
-                clientThread.invokeLater(() ->
+            case "shareSoundCache":
+            {
+                soundLoader.setCache(config.cacheDecodedSounds(), config.sampleCacheSize(), config.shareSoundCache());
+                residentSounds.clear();
+                customSounds.reload();
+                customAreaSounds.reload();
+                break;
+            }
+
+            case "dumpMetrics":
+            {
+                if (config.dumpMetrics())
                 {
-                    // Reload the scene to reapply ambient sounds
-                    if (client.getGameState() == GameState.LOGGED_IN)
-                    {
-                        client.setGameState(GameState.LOADING);
-                    }
-                });
+                    configManager.setConfiguration(CONFIG_GROUP, "dumpMetrics", false);
+                    clientThread.invokeLater(this::dumpMetrics);
+                }
                 break;
             }
 
-            case "nativeSoundIDsToReplace": {
-                nativeSoundIDsToSwap = getIds( event.getNewValue() );
+            case "buildSoundPack":
+            {
+                if (config.buildSoundPack())
+                {
+                    configManager.setConfiguration(CONFIG_GROUP, "buildSoundPack", false);
+                    buildSoundPack();
+                }
                 break;
             }
 
-            case "nativeSoundIDReplacements": {
-                nativeSoundIDReplacements = getIds( event.getNewValue() );
+            case "consumeAmbientSounds":
+            case "whitelistAmbientSounds":
+            case "blacklistedAmbientSounds":
+            {
+                clientThread.invokeLater(this::applyAmbientFilter);
                 break;
             }
         }
 
+        publishSnapshot();
         soundEffectOverlay.resetLines();
     }
 
+    /**
+     * Applies the playback section of the config to the mixer, loader and libraries, and opens the
+     * sound pack. Sounds loaded afterwards use the new settings.
+     */
+    void applyPlaybackSettings()
+    {
+        clipPool.setPolyphony(config.customSoundVoices());
+        mixer.setPolyphony(config.customSoundVoices());
+        soundLoader.setStorage(config.sampleStorage());
+        soundLoader.setStreamingThreshold(streamingThreshold());
+        soundLoader.setCompression(config.sampleCompression());
+        soundLoader.setCache(config.cacheDecodedSounds(), config.sampleCacheSize(), config.shareSoundCache());
+        residentSounds.setBudget(config.lazyLoadingBudget() * 1024L * 1024L);
+        customSounds.setLazy(config.lazyLoading());
+        customAreaSounds.setLazy(config.lazyLoading());
+        soundLoader.openPack();
+    }
+
     void updateLists()
     {
-        if (!config.customSounds().isEmpty())
-        {
-            updateSoundList(customSounds, config.customSounds());
-        }
+        customSounds.update(config.customSounds());
+        customAreaSounds.update(config.customAreaSounds());
+        publishSnapshot();
+    }
 
-        if (!config.customAreaSounds().isEmpty())
+    private void updateWatcher()
+    {
+        if (!config.reloadChangedSounds())
         {
-            updateSoundList(customAreaSounds, config.customAreaSounds());
+            soundDirectoryWatcher.stop();
+            return;
         }
 
-        if (!config.whitelistSounds().isEmpty())
+        try
         {
-            whitelistedSounds = getIds(config.whitelistSounds());
+            soundDirectoryWatcher.start();
         }
-
-        if (!config.whitelistAreaSounds().isEmpty())
+        catch (IOException e)
         {
-            whitelistedAreaSounds = getIds(config.whitelistAreaSounds());
+            log.warn("Unable to watch the SoundSwapper folder for changes", e);
         }
+    }
 
-        if (!config.blacklistedSounds().isEmpty())
+    private void buildSoundPack()
+    {
+        soundLoader.buildPack().whenComplete((count, error) ->
         {
-            blacklistedSounds = getIds(config.blacklistedSounds());
-        }
+            if (error != null)
+            {
+                log.warn("Unable to build the sound pack", error);
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                sendMessage("Unable to build the sound pack: " + cause.getMessage());
+                return;
+            }
 
-        if (!config.blacklistedAreaSounds().isEmpty())
+            log.info("Packed {} sounds", count);
+            sendMessage("Built a sound pack with " + count + " sounds.");
+            residentSounds.clear();
+            customSounds.reload();
+            customAreaSounds.reload();
+        });
+    }
+
+    private void sendMessage(String message)
+    {
+        clientThread.invokeLater(() -> client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", "SoundSwapper: " + message, null));
+    }
+
+    /**
+     * Writes the metrics to a new file in the SoundSwapper folder. Called on the client thread, which
+     * owns the per-id counters, the file itself is written in the background.
+     */
+    private void dumpMetrics()
+    {
+        StringBuilder text = new StringBuilder();
+        text.append("Sound effect dispatch: ").append(metrics.getSoundEffectDispatch().getCount()).append(" events, ")
+                .append(SoundMetrics.summarize(metrics.getSoundEffectDispatch())).append('\n');
+        text.append("Area sound dispatch: ").append(metrics.getAreaSoundDispatch().getCount()).append(" events, ")
+                .append(SoundMetrics.summarize(metrics.getAreaSoundDispatch())).append('\n');
+        text.append("Custom sound start: ").append(metrics.getPlayStart().getCount()).append(" plays, ")
+                .append(SoundMetrics.summarize(metrics.getPlayStart())).append('\n');
+        text.append("Sound load: ").append(soundLoader.getLoadTimes().getCount()).append(" loads, ")
+                .append(SoundMetrics.summarize(soundLoader.getLoadTimes())).append('\n');
+        text.append("Shared sound loads: ").append(soundLoader.getSharedLoads()).append('\n');
+        text.append("Active voices: ").append(mixer.getActiveVoices()).append(", dropped: ").append(mixer.getDropped()).append('\n');
+        text.append("Line failures: ").append(metrics.getLineFailures()).append('\n');
+        text.append("Area sounds played: ").append(playedAreaSounds).append(", culled out of range: ").append(culledAreaSounds).append('\n');
+        text.append("Clip pool hits: ").append(clipPool.getHits()).append(", misses: ").append(clipPool.getMisses())
+                .append(", exhausted: ").append(clipPool.getExhausted()).append('\n');
+        text.append('\n').append("id\tplayed\tconsumed\tswapped\tculled\n");
+        for (int soundId : metrics.getSoundIds())
         {
-            blacklistedAreaSounds = getIds(config.blacklistedAreaSounds());
+            text.append(soundId)
+                    .append('\t').append(metrics.getCount(soundId, SoundMetrics.PLAYED))
+                    .append('\t').append(metrics.getCount(soundId, SoundMetrics.CONSUMED))
+                    .append('\t').append(metrics.getCount(soundId, SoundMetrics.SWAPPED))
+                    .append('\t').append(metrics.getCount(soundId, SoundMetrics.CULLED))
+                    .append('\n');
         }
 
-        if (!config.nativeSoundIDsToReplace().isEmpty())
+        File file = new File(soundDirectory, "metrics-" + System.currentTimeMillis() + ".txt");
+        soundLoader.schedule(() ->
         {
-            nativeSoundIDsToSwap = getIds(config.nativeSoundIDsToReplace());
-        }
+            try
+            {
+                Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+                log.info("Wrote sound metrics to {}", file);
+            }
+            catch (IOException e)
+            {
+                log.warn("Unable to write sound metrics to " + file, e);
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+    }
 
-        if (!config.nativeSoundIDReplacements().isEmpty())
+    private void soundFileChanged(String name)
+    {
+        if (name == null)
         {
-            nativeSoundIDReplacements = getIds(config.nativeSoundIDReplacements());
+            residentSounds.clear();
+            customSounds.reload();
+            customAreaSounds.reload();
+            return;
         }
+
+        residentSounds.invalidate(name);
+        customSounds.fileChanged(name);
+        customAreaSounds.fileChanged(name);
+    }
+
+    /**
+     * Rebuilds the settings and rule tables from the config and swaps them in for the event handlers.
+     */
+    synchronized void publishSnapshot()
+    {
+        snapshot = ConfigSnapshot.of(config, customSounds, customAreaSounds);
+    }
+
+    SoundMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    LatencyHistogram getLoadTimes()
+    {
+        return soundLoader.getLoadTimes();
+    }
+
+    int getActiveVoices()
+    {
+        return mixer.getActiveVoices();
+    }
+
+    DecisionJournal getJournal()
+    {
+        return journal;
+    }
+
+    ConfigSnapshot getSnapshot()
+    {
+        return snapshot;
     }
 
     @Subscribe
     public void onSoundEffectPlayed(SoundEffectPlayed event)
+    {
+        long start = System.nanoTime();
+        dispatchSoundEffect(event);
+        metrics.getSoundEffectDispatch().record(System.nanoTime() - start);
+    }
+
+    private void dispatchSoundEffect(SoundEffectPlayed event)
     {
         int soundId = event.getSoundId();
+        ConfigSnapshot settings = snapshot;
+        SoundTable table = settings.getSoundTable();
+        int slot = table.find(soundId);
+        int flags = table.getFlags(slot);
 
-        if (config.nativeSoundIDSwapEnable()) {
-            if (nativeSoundIDsToSwap.contains(soundId))
+        if ((flags & SoundTable.NATIVE_SWAP) != 0 && settings.isNativeSoundIDSwapEnable())
+        {
+            int soundVolume = settings.getNativeSwapVolume();
+            if (soundVolume == -1)
             {
-                int idx = nativeSoundIDsToSwap.indexOf(soundId);
-                Preferences preferences = client.getPreferences();
-                int originalVolume = preferences.getSoundEffectVolume();
-                int soundVolume =  originalVolume;
-
-                if (config.enableCustomSoundsVolume())
-                {
-                    soundVolume = config.customSoundsVolume() * SoundEffectVolume.HIGH / 100;
-                }
-
-                if (idx < nativeSoundIDReplacements.size())
-                {
-                    event.consume();
-                    preferences.setSoundEffectVolume(soundVolume);
-                    client.playSoundEffect(nativeSoundIDReplacements.get(idx), soundVolume);
-                    preferences.setSoundEffectVolume(originalVolume);
-                    return;
-                }
+                soundVolume = client.getPreferences().getSoundEffectVolume();
             }
+
+            event.consume();
+            client.playSoundEffect(table.getReplacement(slot), soundVolume);
+            record(soundId, DecisionJournal.SOUND_EFFECT, DecisionJournal.SWAPPED, true);
+            return;
         }
 
-        if (config.soundEffects())
+        if ((flags & SoundTable.CUSTOM) != 0 && settings.isSoundEffects())
         {
-            if (customSounds.containsKey(soundId))
-            {
-                event.consume();
-                playCustomSound(customSounds.get(soundId), (config.enableCustomSoundsVolume() ? config.customSoundsVolume() : -1));
-                return;
-            }
+            event.consume();
+            playCustomSound(table, slot, 1f);
+            record(soundId, DecisionJournal.SOUND_EFFECT, DecisionJournal.CUSTOM, true);
+            return;
         }
 
-        if (config.consumeSoundEffects() || blacklistedSounds.contains(soundId))
+        int action = filter(settings.isConsumeSoundEffects(), flags);
+        if (action == DecisionJournal.CONSUMED || action == DecisionJournal.BLACKLISTED)
         {
-            if (!whitelistedSounds.isEmpty() && whitelistedSounds.contains(soundId))
-            {
-                log.debug("whitelisted other sound effect passed: {}", soundId);
-                return;
-            }
-
-            log.debug("consumed other sound effect: {}", soundId);
             event.consume();
         }
+        record(soundId, DecisionJournal.SOUND_EFFECT, action, true);
     }
 
     @Subscribe
     public void onAreaSoundEffectPlayed(AreaSoundEffectPlayed event)
     {
-        int soundId = event.getSoundId();
-
-        if (config.nativeSoundIDSwapEnable()) {
-            if (nativeSoundIDsToSwap.contains(soundId))
-            {
-                int idx = nativeSoundIDsToSwap.indexOf(soundId);
-                Preferences preferences = client.getPreferences();
-                int originalVolume = preferences.getAreaSoundEffectVolume();
-                int soundVolume =  originalVolume;
+        long start = System.nanoTime();
+        dispatchAreaSoundEffect(event);
+        metrics.getAreaSoundDispatch().record(System.nanoTime() - start);
+    }
 
-                if (config.enableCustomSoundsVolume())
-                {
-                    soundVolume = config.customSoundsVolume() * SoundEffectVolume.HIGH / 100;
-                }
+    private void dispatchAreaSoundEffect(AreaSoundEffectPlayed event)
+    {
+        int soundId = event.getSoundId();
+        ConfigSnapshot settings = snapshot;
+        SoundTable table = settings.getAreaSoundTable();
+        int slot = table.find(soundId);
+        int flags = table.getFlags(slot);
 
-                if (idx < nativeSoundIDReplacements.size())
-                {
-                    event.consume();
-                    preferences.setAreaSoundEffectVolume(soundVolume);
-                    client.playSoundEffect(nativeSoundIDReplacements.get(idx), soundVolume);
-                    preferences.setAreaSoundEffectVolume(originalVolume);
-                    return;
-                }
-            }
-        }
+        int distance = distanceTo(event);
+        boolean inRange = distance <= event.getRange();
 
-        if (config.areaSoundEffects())
+        if ((flags & SoundTable.NATIVE_SWAP) != 0 && settings.isNativeSoundIDSwapEnable())
         {
-            if (customAreaSounds.containsKey(soundId))
+            int soundVolume = settings.getNativeSwapVolume();
+            if (soundVolume == -1)
             {
-                event.consume();
-                playCustomSound(customAreaSounds.get(soundId), (config.enableCustomAreaSoundsVolume() ? config.customAreaSoundsVolume() : -1));
-                return;
+                soundVolume = client.getPreferences().getAreaSoundEffectVolume();
             }
+
+            event.consume();
+            client.playSoundEffect(table.getReplacement(slot), soundVolume);
+            record(soundId, DecisionJournal.AREA_SOUND_EFFECT, DecisionJournal.SWAPPED, inRange);
+            return;
         }
 
-        if (config.consumeAreaSounds() || blacklistedAreaSounds.contains(soundId))
+        if ((flags & SoundTable.CUSTOM) != 0 && settings.isAreaSoundEffects())
         {
-            if (!whitelistedAreaSounds.isEmpty() && whitelistedAreaSounds.contains(soundId))
+            event.consume();
+            if (!inRange)
             {
-                log.debug("whitelisted area sound effect passed: {}", soundId);
+                record(soundId, DecisionJournal.AREA_SOUND_EFFECT, DecisionJournal.CULLED, false);
+                culledAreaSounds++;
                 return;
             }
 
-            log.debug("consumed area sound effect: {}", soundId);
+            record(soundId, DecisionJournal.AREA_SOUND_EFFECT, DecisionJournal.CUSTOM, true);
+            playedAreaSounds++;
+            playCustomSound(table, slot, attenuation(distance, event.getRange()));
+            return;
+        }
+
+        int action = filter(settings.isConsumeAreaSounds(), flags);
+        if (action == DecisionJournal.CONSUMED || action == DecisionJournal.BLACKLISTED)
+        {
             event.consume();
         }
+        record(soundId, DecisionJournal.AREA_SOUND_EFFECT, action, inRange);
+    }
+
+    private void record(int soundId, int type, int action, boolean inRange)
+    {
+        journal.record(soundId, type, action, inRange);
+        metrics.count(soundId, action);
+    }
+
+    /**
+     * @return the journal action for a sound that is not swapped or replaced, consumed if every sound
+     * of its kind is consumed or it is blacklisted, unless it is whitelisted
+     */
+    private static int filter(boolean consumeAll, int flags)
+    {
+        if (!consumeAll && (flags & SoundTable.BLACKLISTED) == 0)
+        {
+            return DecisionJournal.ALLOWED;
+        }
+
+        if ((flags & SoundTable.WHITELISTED) != 0)
+        {
+            return DecisionJournal.WHITELISTED;
+        }
+
+        return (flags & SoundTable.BLACKLISTED) != 0 ? DecisionJournal.BLACKLISTED : DecisionJournal.CONSUMED;
     }
 
     @Subscribe
     public void onGameStateChanged(GameStateChanged gameStateChanged)
     {
         GameState gameState = gameStateChanged.getGameState();
-        if (gameState == GameState.LOGGED_IN)
+        if (gameState == GameState.LOADING)
         {
-            if (config.consumeAmbientSounds())
-            {
-                client.getAmbientSoundEffects().clear();
-            }
+            ambientSoundFilter.reset();
+        }
+        else if (gameState == GameState.LOGGED_IN)
+        {
+            ambientSoundFilter.apply(client.getAmbientSoundEffects(), snapshot);
         }
     }
 
-    private boolean tryLoadSound(HashMap<Integer, Sound> sounds, String sound_name, Integer sound_id)
+    private void applyAmbientFilter()
     {
-        File sound_file = new File(SOUND_DIR, sound_name + ".wav");
+        if (client.getGameState() == GameState.LOGGED_IN && ambientSoundFilter.apply(client.getAmbientSoundEffects(), snapshot))
+        {
+            // Reload the scene to stop the ambient sounds that were taken out
+            client.setGameState(GameState.LOADING);
+        }
+    }
 
-        if (sound_file.exists())
+    /**
+     * @return the distance in tiles from the local player to the area sound, or 0 if the player's
+     * position is not known
+     */
+    private int distanceTo(AreaSoundEffectPlayed event)
+    {
+        Player localPlayer = client.getLocalPlayer();
+        LocalPoint lp = localPlayer != null ? localPlayer.getLocalLocation() : null;
+        if (lp == null)
         {
-            try
-            {
-                InputStream fileStream = new BufferedInputStream(new FileInputStream(sound_file));
-                AudioInputStream stream = AudioSystem.getAudioInputStream(fileStream);
+            return 0;
+        }
 
-                int streamLen = (int)stream.getFrameLength() * stream.getFormat().getFrameSize();
-                byte[] bytes = new byte[streamLen];
-                stream.read(bytes);
+        return Math.abs(lp.getSceneX() - event.getSceneX()) + Math.abs(lp.getSceneY() - event.getSceneY());
+    }
 
-                Sound sound = new Sound(bytes, stream.getFormat(), streamLen);
-                sounds.put(sound_id, sound);
+    /**
+     * Fades an area sound linearly from full volume at its source towards silence past its range.
+     */
+    private static float attenuation(int distance, int range)
+    {
+        return range <= 0 ? 1f : 1f - (float) distance / (range + 1);
+    }
 
-                return true;
-            }
-            catch (UnsupportedAudioFileException | IOException e)
+    private void playCustomSound(SoundTable table, int slot, float attenuation)
+    {
+        Sound sound = table.getSound(slot);
+        float gain = table.getGain(slot) * attenuation;
+
+        if (sound == null)
+        {
+            // Lazily loaded sounds play as soon as they are decoded
+            String name = table.getName(slot);
+            sound = residentSounds.get(name);
+            if (sound == null)
             {
-                log.warn("Unable to load custom sound " + sound_name, e);
+                residentSounds.request(name, loaded -> playCustomSound(loaded, gain));
+                return;
             }
         }
 
-        return false;
+        playCustomSound(sound, gain);
     }
 
-    private void updateSoundList(HashMap<Integer, Sound> sounds, String configText)
+    private void playCustomSound(Sound sound, float gain)
     {
-        sounds.clear();
+        long start = System.nanoTime();
+        startCustomSound(sound, gain);
+        metrics.getPlayStart().record(System.nanoTime() - start);
+    }
 
-        for (String s : Text.fromCSV(configText))
+    private void startCustomSound(Sound sound, float gain)
+    {
+        if (mixer.isRunning() && SoundMixer.canMix(sound))
         {
-            try
-            {
-                int id = Integer.parseInt(s);
-                tryLoadSound(sounds, s, id);
-            } catch (NumberFormatException e)
-            {
-                log.warn("Invalid sound ID: {}", s);
-            }
+            mixer.play(sound, gain);
+            return;
         }
-    }
 
-    private List<Integer> getIds(String configText)
-    {
-        if (configText == null || configText.isEmpty())
+        if (sound.isStreamed())
         {
-            return List.of();
+            log.debug("Unable to stream custom sound without the mixer: {}", sound.getStreamFile().getName());
+            return;
         }
 
-        List<Integer> ids = new ArrayList<>();
-        for (String s : Text.fromCSV(configText))
+        try
         {
-            try
-            {
-                int id = Integer.parseInt(s);
-                ids.add(id);
-            }
-            catch (NumberFormatException e)
-            {
-                log.warn("Invalid id when parsing {}: {}", configText, s);
-            }
+            clipPool.play(sound, gain);
         }
+        catch (LineUnavailableException e)
+        {
+            metrics.lineFailed();
+            log.warn("Failed to play custom sound");
+        }
+    }
 
-        return ids;
+    /**
+     * Streamed sounds only play through the mixer, without it every sound is loaded to play on a clip.
+     */
+    private int streamingThreshold()
+    {
+        return mixer.isRunning() ? config.streamingThreshold() : 0;
     }
 
-    private void playCustomSound(Sound sound, int volume)
+    /**
+     * Holds the clips of a loaded sound until it is released, and opens its first clip if it will play
+     * through the clip pool rather than the mixer.
+     */
+    private void retainClips(Sound sound)
     {
-        try
+        clipPool.retain(sound);
+        if (!sound.isStreamed() && !(mixer.isRunning() && SoundMixer.canMix(sound)))
         {
-            Clip clip = AudioSystem.getClip();
-            clip.addLineListener(event -> {
-                if (event.getType() == LineEvent.Type.STOP) {
-                    clip.close();
-                }
-            });
-            clip.open(sound.getFormat(), sound.getBytes(), 0, sound.getNumBytes());
-
-            if (volume != -1)
-            {
-                FloatControl control = (FloatControl) clip.getControl(FloatControl.Type.MASTER_GAIN);
+            clipPool.prepare(sound);
+        }
+    }
 
-                if (control != null)
-                {
-                    control.setValue((float)(volume / 2 - 45));
-                }
-            }
+    /**
+     * Creates the sound loader and everything that loads through it.
+     */
+    void startLoader()
+    {
+        soundLoader = new SoundLoader(soundDirectory);
+        residentSounds = new ResidentSoundCache(soundLoader, this::retainClips, clipPool::release);
+        customSounds = new SoundLibrary(soundLoader, this::publishSnapshot, this::retainClips, clipPool::release);
+        customAreaSounds = new SoundLibrary(soundLoader, this::publishSnapshot, this::retainClips, clipPool::release);
+    }
 
-            clip.setFramePosition(0);
-            clip.start();
-        } catch (LineUnavailableException e)
+    /**
+     * Waits for the queued loads and the sample cache index write, then stops the loader threads.
+     */
+    void stopLoader() throws InterruptedException
+    {
+        if (!soundLoader.shutdown(LOADER_STOP_SECONDS, TimeUnit.SECONDS))
         {
-            log.warn("Failed to play custom sound");
+            log.warn("Custom sounds were still loading {} seconds after shutting down", LOADER_STOP_SECONDS);
         }
     }
 
     private void reset()
     {
-        customSounds = new HashMap<>();
-        customAreaSounds = new HashMap<>();
-        whitelistedSounds = new ArrayList<>();
-        whitelistedAreaSounds = new ArrayList<>();
-        blacklistedSounds = new ArrayList<>();
-        blacklistedAreaSounds = new ArrayList<>();
-        nativeSoundIDsToSwap = new ArrayList<>();
-        nativeSoundIDReplacements = new ArrayList<>();
+        customSounds.clear();
+        customAreaSounds.clear();
+        residentSounds.clear();
+        snapshot = ConfigSnapshot.EMPTY;
+        clipPool.close();
         soundEffectOverlay.resetLines();
     }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Open addressing table of every rule that applies to a sound id, compiled from the config lists so
+ * that handling a sound event is a single probe with no boxing.
+ */
+final class SoundTable
+{
+    static final int NATIVE_SWAP = 1;
+    static final int CUSTOM = 1 << 1;
+    static final int BLACKLISTED = 1 << 2;
+    static final int WHITELISTED = 1 << 3;
+
+    static final SoundTable EMPTY = new Builder().build();
+
+    // Sound ids are never negative, so this can mark a free slot
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private final int[] keys;
+    private final int[] flags;
+    private final int[] replacements;
+    private final int[] volumes;
+    private final float[] gains;
+    private final Sound[] sounds;
+    private final String[] names;
+    private final int mask;
+    private final int size;
+
+    private SoundTable(Map<Integer, Entry> entries)
+    {
+        int capacity = 2;
+        while (capacity < entries.size() * 2)
+        {
+            capacity <<= 1;
+        }
+
+        keys = new int[capacity];
+        flags = new int[capacity];
+        replacements = new int[capacity];
+        volumes = new int[capacity];
+        gains = new float[capacity];
+        sounds = new Sound[capacity];
+        names = new String[capacity];
+        mask = capacity - 1;
+        size = entries.size();
+
+        Arrays.fill(keys, FREE);
+
+        for (Entry entry : entries.values())
+        {
+            int slot = hash(entry.soundId) & mask;
+            while (keys[slot] != FREE)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = entry.soundId;
+            flags[slot] = entry.flags;
+            replacements[slot] = entry.replacement;
+            volumes[slot] = entry.volume;
+            gains[slot] = SoundMixer.gain(entry.volume);
+            sounds[slot] = entry.sound;
+            names[slot] = entry.name;
+        }
+    }
+
+    /**
+     * @return the slot holding the rules for the sound id, or -1 if no rule applies to it
+     */
+    int find(int soundId)
+    {
+        int slot = hash(soundId) & mask;
+        int key;
+        while ((key = keys[slot]) != FREE)
+        {
+            if (key == soundId)
+            {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    int getFlags(int slot)
+    {
+        return slot < 0 ? 0 : flags[slot];
+    }
+
+    int getReplacement(int slot)
+    {
+        return replacements[slot];
+    }
+
+    int getVolume(int slot)
+    {
+        return volumes[slot];
+    }
+
+    float getGain(int slot)
+    {
+        return gains[slot];
+    }
+
+    /**
+     * @return the loaded custom sound, or null if the sound is only indexed and loads on first play
+     */
+    Sound getSound(int slot)
+    {
+        return sounds[slot];
+    }
+
+    /**
+     * @return the sound file name of a custom sound that loads on first play
+     */
+    String getName(int slot)
+    {
+        return names[slot];
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    private static int hash(int soundId)
+    {
+        int h = soundId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry
+    {
+        private final int soundId;
+        private int flags;
+        private int replacement;
+        private int volume = -1;
+        private Sound sound;
+        private String name;
+
+        private Entry(int soundId)
+        {
+            this.soundId = soundId;
+        }
+    }
+
+    static final class Builder
+    {
+        private final Map<Integer, Entry> entries = new LinkedHashMap<>();
+
+        Builder flag(int soundId, int flag)
+        {
+            entry(soundId).flags |= flag;
+            return this;
+        }
+
+        Builder flagAll(Iterable<Integer> soundIds, int flag)
+        {
+            for (int soundId : soundIds)
+            {
+                flag(soundId, flag);
+            }
+            return this;
+        }
+
+        /**
+         * Maps each id to the replacement at the same index, the first occurrence of an id wins.
+         */
+        Builder nativeSwaps(List<Integer> soundIds, List<Integer> replacementIds)
+        {
+            int count = Math.min(soundIds.size(), replacementIds.size());
+            for (int i = 0; i < count; i++)
+            {
+                Entry entry = entry(soundIds.get(i));
+                if ((entry.flags & NATIVE_SWAP) == 0)
+                {
+                    entry.flags |= NATIVE_SWAP;
+                    entry.replacement = replacementIds.get(i);
+                }
+            }
+            return this;
+        }
+
+        Builder custom(int soundId, Sound sound, String name, int volume)
+        {
+            Entry entry = entry(soundId);
+            entry.flags |= CUSTOM;
+            entry.sound = sound;
+            entry.name = name;
+            entry.volume = volume;
+            return this;
+        }
+
+        SoundTable build()
+        {
+            return new SoundTable(entries);
+        }
+
+        private Entry entry(int soundId)
+        {
+            return entries.computeIfAbsent(soundId, Entry::new);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2023, petertalbanese <https://github.com/petertalbanese>
+ * Copyright (c) 2023, damencs <https://github.com/damencs>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.soundswapper;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The header of a RIFF/WAVE file read straight from its channel, so plain PCM and float wavs load
+ * with a single read of the data chunk instead of going through the AudioSystem providers and
+ * their stream buffers. Compressed encodings are left to AudioSystem.
+ */
+final class WavFile
+{
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT = 0x20746d66;
+    private static final int DATA = 0x61746164;
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xfffe;
+
+    // Up to the first two bytes of the extensible sub format, which hold the actual format tag
+    private static final int FMT_EXTENSIBLE_SIZE = 26;
+
+    private final AudioFormat format;
+    private final long dataOffset;
+    private final long dataLength;
+
+    private WavFile(AudioFormat format, long dataOffset, long dataLength)
+    {
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    /**
+     * @return the header of the wav, or null if it is not a wav or uses an encoding this does not read
+     */
+    static WavFile parse(FileChannel channel) throws IOException
+    {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        if (!readFully(channel, header, 0) || header.getInt(0) != RIFF || header.getInt(8) != WAVE)
+        {
+            return null;
+        }
+
+        AudioFormat format = null;
+        ByteBuffer chunk = ByteBuffer.allocate(FMT_EXTENSIBLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 12;
+        while (position + 8 <= size)
+        {
+            chunk.clear().limit(8);
+            if (!readFully(channel, chunk, position))
+            {
+                return null;
+            }
+
+            int id = chunk.getInt(0);
+            long length = chunk.getInt(4) & 0xffffffffL;
+            long body = position + 8;
+
+            if (id == FMT)
+            {
+                chunk.clear().limit((int) Math.min(length, FMT_EXTENSIBLE_SIZE));
+                if (length < 16 || !readFully(channel, chunk, body))
+                {
+                    return null;
+                }
+                format = format(chunk);
+                if (format == null)
+                {
+                    return null;
+                }
+            }
+            else if (id == DATA)
+            {
+                if (format == null)
+                {
+                    return null;
+                }
+
+                // Files written while recording often leave the size unset, the data then runs to the end
+                long available = size - body;
+                long dataLength = length > available ? available : length;
+                dataLength -= dataLength % format.getFrameSize();
+                return new WavFile(format, body, dataLength);
+            }
+
+            position = body + length + (length & 1);
+        }
+
+        return null;
+    }
+
+    private static AudioFormat format(ByteBuffer fmt)
+    {
+        int tag = fmt.getShort(0) & 0xffff;
+        int channels = fmt.getShort(2) & 0xffff;
+        int sampleRate = fmt.getInt(4);
+        int blockAlign = fmt.getShort(12) & 0xffff;
+        int bits = fmt.getShort(14) & 0xffff;
+
+        if (tag == WAVE_FORMAT_EXTENSIBLE)
+        {
+            if (fmt.limit() < FMT_EXTENSIBLE_SIZE)
+            {
+                return null;
+            }
+            tag = fmt.getShort(24) & 0xffff;
+        }
+
+        if (channels == 0 || sampleRate <= 0 || bits == 0 || bits % 8 != 0 || blockAlign != channels * bits / 8)
+        {
+            return null;
+        }
+
+        AudioFormat.Encoding encoding;
+        if (tag == WAVE_FORMAT_PCM && bits <= 32)
+        {
+            encoding = bits == 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+        }
+        else if (tag == WAVE_FORMAT_IEEE_FLOAT && (bits == 32 || bits == 64))
+        {
+            encoding = AudioFormat.Encoding.PCM_FLOAT;
+        }
+        else
+        {
+            return null;
+        }
+
+        return new AudioFormat(encoding, sampleRate, bits, channels, blockAlign, sampleRate, false);
+    }
+
+    AudioFormat getFormat()
+    {
+        return format;
+    }
+
+    long getDataLength()
+    {
+        return dataLength;
+    }
+
+    long getFrameLength()
+    {
+        return dataLength / format.getFrameSize();
+    }
+
+    /**
+     * Reads the data chunk into an array of exactly its size, a file that ends early gives a shorter array.
+     */
+    byte[] readData(FileChannel channel) throws IOException
+    {
+        byte[] bytes = new byte[(int) dataLength];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        readFully(channel, buffer, dataOffset);
+        return buffer.hasRemaining() ? Arrays.copyOf(bytes, buffer.position()) : bytes;
+    }
+
+    /**
+     * @return false if the channel ended before the buffer was filled
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position);
+            if (read == -1)
+            {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,193 @@
+package com.soundswapper;
+
+import org.junit.Test;
+
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineEvent;
+import javax.sound.sampled.LineListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClipPoolTest
+{
+    private static final long SECOND = 1_000_000;
+
+    private final List<FakeClip> opened = new ArrayList<>();
+    private long clipMicroseconds = SECOND;
+
+    private final ClipPool pool = new ClipPool(sound ->
+    {
+        FakeClip clip = new FakeClip(clipMicroseconds);
+        opened.add(clip);
+        return clip.clip;
+    });
+
+    private final Sound sound = new Sound(ByteBuffer.allocate(4), SoundMixer.FORMAT);
+
+    @Test
+    public void reusesAClipThatFinished() throws Exception
+    {
+        clipMicroseconds = 0;
+
+        pool.play(sound, 1f);
+        pool.play(sound, 1f);
+
+        assertEquals(1, opened.size());
+        assertEquals(2, opened.get(0).starts);
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    public void restartsTheOldestClipAtThePolyphonyLimit() throws Exception
+    {
+        pool.setPolyphony(2);
+
+        pool.play(sound, 1f);
+        pool.play(sound, 1f);
+        pool.play(sound, 1f);
+
+        assertEquals(2, opened.size());
+        assertEquals(2, opened.get(0).starts);
+        assertEquals(1, opened.get(1).starts);
+        assertEquals(1, pool.getExhausted());
+    }
+
+    @Test
+    public void preparedClipIsPlayedFirst() throws Exception
+    {
+        pool.prepare(sound);
+        pool.prepare(sound);
+        pool.play(sound, 1f);
+
+        assertEquals(1, opened.size());
+        assertEquals(1, opened.get(0).starts);
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    public void keepsClipsUntilEveryHolderReleases()
+    {
+        pool.retain(sound);
+        pool.retain(sound);
+        pool.prepare(sound);
+
+        pool.release(sound);
+        assertFalse(opened.get(0).closed);
+
+        pool.release(sound);
+        assertTrue(opened.get(0).closed);
+    }
+
+    @Test
+    public void releasedClipFinishesPlaying() throws Exception
+    {
+        pool.retain(sound);
+        pool.play(sound, 1f);
+
+        pool.release(sound);
+        assertFalse(opened.get(0).closed);
+
+        opened.get(0).finish();
+        assertTrue(opened.get(0).closed);
+    }
+
+    @Test
+    public void polyphonyChangeLetsPlayingClipsFinish() throws Exception
+    {
+        pool.prepare(sound);
+        pool.play(sound, 1f);
+        pool.play(sound, 1f);
+        opened.get(1).finish();
+
+        pool.setPolyphony(1);
+        assertFalse(opened.get(0).closed);
+        assertTrue(opened.get(1).closed);
+
+        pool.play(sound, 1f);
+        assertEquals(3, opened.size());
+
+        opened.get(0).finish();
+        assertTrue(opened.get(0).closed);
+    }
+
+    @Test
+    public void closeStopsEverything() throws Exception
+    {
+        pool.retain(sound);
+        pool.play(sound, 1f);
+
+        pool.close();
+
+        assertTrue(opened.get(0).closed);
+    }
+
+    /**
+     * A clip that plays until {@link #finish()} is called.
+     */
+    private static final class FakeClip implements InvocationHandler
+    {
+        private final Clip clip = (Clip) Proxy.newProxyInstance(Clip.class.getClassLoader(), new Class<?>[]{Clip.class}, this);
+        private final List<LineListener> listeners = new ArrayList<>();
+        private final long microseconds;
+
+        private boolean running;
+        private boolean closed;
+        private int starts;
+
+        private FakeClip(long microseconds)
+        {
+            this.microseconds = microseconds;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+            switch (method.getName())
+            {
+                case "start":
+                    running = true;
+                    starts++;
+                    return null;
+                case "stop":
+                    finish();
+                    return null;
+                case "close":
+                    closed = true;
+                    return null;
+                case "isRunning":
+                    return running;
+                case "isControlSupported":
+                    return false;
+                case "getMicrosecondLength":
+                    return microseconds;
+                case "addLineListener":
+                    listeners.add((LineListener) args[0]);
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        }
+
+        private void finish()
+        {
+            running = false;
+            for (LineListener listener : new ArrayList<>(listeners))
+            {
+                listener.update(new LineEvent(clip, LineEvent.Type.STOP, 0));
+            }
+        }
+    }
+}
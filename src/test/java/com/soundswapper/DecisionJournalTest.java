@@ -0,0 +1,78 @@
+package com.soundswapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DecisionJournalTest
+{
+    @Test
+    public void roundsTheCapacityUpToAPowerOfTwo()
+    {
+        assertEquals(128, new DecisionJournal(100).capacity());
+        assertEquals(1024, new DecisionJournal(1024).capacity());
+    }
+
+    @Test
+    public void readsBackEveryField()
+    {
+        DecisionJournal journal = new DecisionJournal(16);
+        DecisionJournal.Entry entry = new DecisionJournal.Entry();
+        long before = System.nanoTime();
+
+        journal.record(65535, DecisionJournal.AREA_SOUND_EFFECT, DecisionJournal.CULLED, false);
+        journal.record(42, DecisionJournal.SOUND_EFFECT, DecisionJournal.SWAPPED, true);
+
+        assertEquals(2, journal.getWritten());
+        assertTrue(journal.read(0, entry));
+        assertEquals(65535, entry.soundId);
+        assertEquals(DecisionJournal.AREA_SOUND_EFFECT, entry.type);
+        assertEquals(DecisionJournal.CULLED, entry.action);
+        assertFalse(entry.inRange);
+        assertTrue(entry.timestamp - before >= 0);
+
+        assertTrue(journal.read(1, entry));
+        assertEquals(42, entry.soundId);
+        assertEquals(DecisionJournal.SOUND_EFFECT, entry.type);
+        assertEquals(DecisionJournal.SWAPPED, entry.action);
+        assertTrue(entry.inRange);
+    }
+
+    @Test
+    public void unwrittenEntriesCannotBeRead()
+    {
+        DecisionJournal journal = new DecisionJournal(4);
+
+        assertFalse(journal.read(0, new DecisionJournal.Entry()));
+    }
+
+    @Test
+    public void wrapsAroundOverTheOldestEntries()
+    {
+        DecisionJournal journal = new DecisionJournal(4);
+        DecisionJournal.Entry entry = new DecisionJournal.Entry();
+
+        for (int soundId = 0; soundId < 10; soundId++)
+        {
+            journal.record(soundId, DecisionJournal.SOUND_EFFECT, DecisionJournal.ALLOWED, true);
+        }
+
+        assertEquals(10, journal.getWritten());
+        long oldest = journal.getWritten() - journal.capacity();
+        for (long index = 0; index < 10; index++)
+        {
+            if (index < oldest)
+            {
+                assertFalse("overwritten " + index, journal.read(index, entry));
+            }
+            else
+            {
+                assertTrue("kept " + index, journal.read(index, entry));
+                assertEquals(index, entry.soundId);
+            }
+        }
+        assertFalse(journal.read(10, entry));
+    }
+}
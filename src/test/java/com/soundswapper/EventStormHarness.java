@@ -0,0 +1,252 @@
+package com.soundswapper;
+
+import com.sun.management.ThreadMXBean;
+import net.runelite.api.events.AreaSoundEffectPlayed;
+import net.runelite.api.events.SoundEffectPlayed;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the plugin and the debug overlay with synthetic sound event traffic, without a client or
+ * sound card, and reports throughput, per event latency and allocation. Options are key=value
+ * arguments, for example a raid-like storm of 400 events per game tick:
+ *
+ * <pre>
+ * EventStormHarness perTick=400 areaShare=0.9 seconds=30
+ * </pre>
+ *
+ * <ul>
+ * <li>seconds: how long to run, default 10</li>
+ * <li>perTick: events per 600ms game tick, all sent at the start of the tick like the client does,
+ * or 0 to send them as fast as possible, default 0</li>
+ * <li>areaShare: fraction of events that are area sounds, default 0.7</li>
+ * <li>ids: number of distinct sound ids, default 2000</li>
+ * <li>zipf: skew of the sound id distribution, 0 for uniform, default 1</li>
+ * <li>range: range of area sounds in tiles, default 10</li>
+ * <li>maxDistance: furthest an area sound is from the player in tiles, default 20</li>
+ * <li>rules: number of blacklisted ids, a quarter as many are whitelisted and a tenth swapped, default 200</li>
+ * <li>custom: number of ids with a custom sound, default 20</li>
+ * <li>realTime: pace the mixer like a sound card, default true</li>
+ * <li>debug: render the debug overlay at 50 frames per second, default true</li>
+ * </ul>
+ */
+public class EventStormHarness
+{
+    private static final long TICK_NANOS = 600_000_000L;
+    private static final long FRAME_NANOS = 20_000_000L;
+    private static final int SCENE_X = 52;
+    private static final int SCENE_Y = 52;
+    private static final int PLANNED_EVENTS = 1 << 16;
+
+    public static void main(String[] args) throws Exception
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args)
+        {
+            int separator = arg.indexOf('=');
+            if (separator < 0)
+            {
+                throw new IllegalArgumentException("Expected key=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        int perTick = Integer.parseInt(options.getOrDefault("perTick", "0"));
+        double areaShare = Double.parseDouble(options.getOrDefault("areaShare", "0.7"));
+        int ids = Integer.parseInt(options.getOrDefault("ids", "2000"));
+        double zipf = Double.parseDouble(options.getOrDefault("zipf", "1"));
+        int range = Integer.parseInt(options.getOrDefault("range", "10"));
+        int maxDistance = Integer.parseInt(options.getOrDefault("maxDistance", "20"));
+        int rules = Integer.parseInt(options.getOrDefault("rules", "200"));
+        int custom = Integer.parseInt(options.getOrDefault("custom", "20"));
+        boolean realTime = Boolean.parseBoolean(options.getOrDefault("realTime", "true"));
+        boolean debug = Boolean.parseBoolean(options.getOrDefault("debug", "true"));
+
+        // Rules and custom sounds cover the most frequent ids, like a real config would
+        Map<String, Object> config = new HashMap<>();
+        config.put("soundEffects", true);
+        config.put("areaSoundEffects", true);
+        config.put("customSounds", ids(0, custom));
+        config.put("customAreaSounds", ids(0, custom));
+        config.put("blacklistedSounds", ids(custom, rules));
+        config.put("blacklistedAreaSounds", ids(custom, rules));
+        config.put("whitelistSounds", ids(custom + rules / 2, rules / 4));
+        config.put("whitelistAreaSounds", ids(custom + rules / 2, rules / 4));
+        config.put("nativeSoundIDSwapEnable", true);
+        config.put("nativeSoundIDsToReplace", ids(custom + rules, rules / 10));
+        config.put("nativeSoundIDReplacements", ids(custom + rules + rules / 10, rules / 10));
+        config.put("debugSoundEffects", debug);
+        config.put("reloadChangedSounds", false);
+
+        try (PluginFixture fixture = new PluginFixture(config, SCENE_X, SCENE_Y))
+        {
+            for (int soundId = 0; soundId < custom; soundId++)
+            {
+                SyntheticSounds.write(fixture.getDirectory(), String.valueOf(soundId), SyntheticSounds.CD_STEREO, 0.5f);
+            }
+
+            fixture.startMixer(new NullAudioSink(realTime));
+            fixture.loadSounds(60_000);
+
+            SoundSwapperPlugin plugin = fixture.getPlugin();
+            SoundEffectOverlay overlay = new SoundEffectOverlay(plugin);
+            Graphics2D graphics = new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+            // Plan the traffic up front so generating it is not measured
+            Random random = new Random(42);
+            double[] distribution = zipfDistribution(ids, zipf);
+            int[] soundIds = new int[PLANNED_EVENTS];
+            boolean[] area = new boolean[PLANNED_EVENTS];
+            int[] distances = new int[PLANNED_EVENTS];
+            for (int i = 0; i < PLANNED_EVENTS; i++)
+            {
+                soundIds[i] = sample(distribution, random.nextDouble());
+                area[i] = random.nextDouble() < areaShare;
+                distances[i] = random.nextInt(maxDistance + 1);
+            }
+
+            LatencyHistogram latency = new LatencyHistogram();
+            LatencyHistogram tickLatency = new LatencyHistogram();
+            ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+
+            System.out.println("Running for " + seconds + "s, " + (perTick > 0 ? perTick + " events per tick" : "unthrottled"));
+
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long end = start + seconds * 1_000_000_000L;
+            long nextTick = start;
+            long nextFrame = start;
+            long events = 0;
+            long frames = 0;
+
+            long now;
+            while ((now = System.nanoTime()) < end)
+            {
+                if (perTick == 0 || now >= nextTick)
+                {
+                    int burst = perTick > 0 ? perTick : 1024;
+                    for (int n = 0; n < burst; n++)
+                    {
+                        int i = (int) (events++ & (PLANNED_EVENTS - 1));
+                        long eventStart = System.nanoTime();
+                        if (area[i])
+                        {
+                            AreaSoundEffectPlayed event = new AreaSoundEffectPlayed();
+                            event.setSoundId(soundIds[i]);
+                            event.setSceneX(SCENE_X + distances[i]);
+                            event.setSceneY(SCENE_Y);
+                            event.setRange(range);
+                            plugin.onAreaSoundEffectPlayed(event);
+                        }
+                        else
+                        {
+                            SoundEffectPlayed event = new SoundEffectPlayed();
+                            event.setSoundId(soundIds[i]);
+                            plugin.onSoundEffectPlayed(event);
+                        }
+                        latency.record(System.nanoTime() - eventStart);
+                    }
+
+                    if (perTick > 0)
+                    {
+                        tickLatency.record(System.nanoTime() - now);
+                        nextTick += TICK_NANOS;
+                    }
+                }
+
+                if (debug && System.nanoTime() >= nextFrame)
+                {
+                    overlay.render(graphics);
+                    nextFrame += FRAME_NANOS;
+                    frames++;
+                }
+
+                if (perTick > 0)
+                {
+                    long wake = debug ? Math.min(nextTick, nextFrame) : nextTick;
+                    LockSupport.parkNanos(wake - System.nanoTime());
+                }
+            }
+
+            long elapsed = System.nanoTime() - start;
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            SoundMetrics metrics = plugin.getMetrics();
+
+            long played = 0;
+            long consumed = 0;
+            long swapped = 0;
+            long culled = 0;
+            for (int soundId : metrics.getSoundIds())
+            {
+                played += metrics.getCount(soundId, SoundMetrics.PLAYED);
+                consumed += metrics.getCount(soundId, SoundMetrics.CONSUMED);
+                swapped += metrics.getCount(soundId, SoundMetrics.SWAPPED);
+                culled += metrics.getCount(soundId, SoundMetrics.CULLED);
+            }
+
+            System.out.printf("Events: %d in %.1fs, %.0f events/s, %d overlay frames%n", events, elapsed / 1e9, events * 1e9 / elapsed, frames);
+            System.out.println("Latency: " + SoundMetrics.summarize(latency)
+                    + " p99.9 " + LatencyHistogram.format(latency.getValueAtPercentile(99.9))
+                    + " mean " + LatencyHistogram.format(latency.getMean()));
+            if (perTick > 0)
+            {
+                System.out.println("Tick burst: " + SoundMetrics.summarize(tickLatency));
+            }
+            System.out.printf("Allocation: %.1f bytes/event (events, overlay and harness included)%n", (double) allocated / Math.max(1, events));
+            System.out.println("Custom plays: " + played + ", consumed: " + consumed + ", swapped: " + swapped
+                    + ", culled: " + culled
+                    + ", native plays: " + fixture.getTestClient().getPlayedSoundEffects());
+            System.out.println("Custom sound start: " + SoundMetrics.summarize(metrics.getPlayStart())
+                    + ", active voices: " + plugin.getActiveVoices());
+        }
+
+        System.exit(0);
+    }
+
+    private static String ids(int first, int count)
+    {
+        StringJoiner ids = new StringJoiner(",");
+        for (int id = first; id < first + count; id++)
+        {
+            ids.add(String.valueOf(id));
+        }
+        return ids.toString();
+    }
+
+    /**
+     * @return the cumulative probability of each id, id 0 being the most frequent
+     */
+    private static double[] zipfDistribution(int ids, double exponent)
+    {
+        double[] cumulative = new double[ids];
+        double total = 0;
+        for (int i = 0; i < ids; i++)
+        {
+            total += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < ids; i++)
+        {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double value)
+    {
+        int index = Arrays.binarySearch(cumulative, value);
+        return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+}
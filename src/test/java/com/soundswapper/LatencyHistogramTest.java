@@ -0,0 +1,92 @@
+package com.soundswapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void emptyHistogramReportsZero()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void smallValuesHaveTheirOwnBuckets()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 64; value++)
+        {
+            histogram.record(value);
+        }
+
+        assertEquals(31, histogram.getValueAtPercentile(50));
+        assertEquals(62, histogram.getValueAtPercentile(98));
+        assertEquals(63, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void largeValuesKeepTheirPrecision()
+    {
+        for (long value = 100; value < Long.MAX_VALUE / 3; value *= 3)
+        {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(value * 3);
+
+            long reported = histogram.getValueAtPercentile(50);
+            assertTrue(value + " reported as " + reported, reported >= value && reported <= value + value / 30);
+        }
+    }
+
+    @Test
+    public void percentilesNeverExceedTheMax()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_001);
+
+        assertEquals(1_000_001, histogram.getValueAtPercentile(100));
+        assertEquals(1_000_001, histogram.getMax());
+    }
+
+    @Test
+    public void recordsExtremes()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void resetForgetsEverything()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(3000);
+        assertEquals(2000, histogram.getMean());
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void formatsWithAShortUnit()
+    {
+        assertEquals("9999ns", LatencyHistogram.format(9999));
+        assertEquals("10us", LatencyHistogram.format(10_000));
+        assertEquals("9999us", LatencyHistogram.format(9_999_999));
+        assertEquals("10ms", LatencyHistogram.format(10_000_000));
+    }
+}
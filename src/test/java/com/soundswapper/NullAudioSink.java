@@ -0,0 +1,47 @@
+package com.soundswapper;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Discards the mixer's output. In real time mode each write waits as long as the samples would take
+ * to play, like a sound card line, otherwise the mixer runs as fast as it can mix.
+ */
+final class NullAudioSink implements AudioSink
+{
+    private final boolean realTime;
+
+    private long nanosPerByte;
+    private volatile long written;
+
+    NullAudioSink(boolean realTime)
+    {
+        this.realTime = realTime;
+    }
+
+    @Override
+    public void open(AudioFormat format, int bufferSize)
+    {
+        nanosPerByte = (long) (1_000_000_000L / (format.getFrameRate() * format.getFrameSize()));
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+        written += length;
+        if (realTime)
+        {
+            LockSupport.parkNanos(length * nanosPerByte);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    long getWritten()
+    {
+        return written;
+    }
+}
@@ -0,0 +1,135 @@
+package com.soundswapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * A {@link SoundSwapperPlugin} running outside the client, reading custom sounds from a temporary
+ * folder and talking to a {@link TestClient} and {@link TestConfig}. Used by the benchmarks and the
+ * load harness.
+ */
+final class PluginFixture implements AutoCloseable
+{
+    private final File directory;
+    private final TestClient testClient;
+    private final SoundSwapperConfig config;
+    private final SoundSwapperPlugin plugin;
+
+    PluginFixture(Map<String, Object> configValues, int sceneX, int sceneY) throws IOException
+    {
+        directory = Files.createTempDirectory("soundswapper").toFile();
+        testClient = new TestClient(sceneX, sceneY);
+        config = TestConfig.create(configValues);
+        plugin = new SoundSwapperPlugin(directory);
+
+        inject("client", testClient.getClient());
+        inject("config", config);
+        plugin.startLoader();
+    }
+
+    File getDirectory()
+    {
+        return directory;
+    }
+
+    TestClient getTestClient()
+    {
+        return testClient;
+    }
+
+    SoundSwapperPlugin getPlugin()
+    {
+        return plugin;
+    }
+
+    /**
+     * Applies the playback settings, loads the custom sound lists from the config and waits until every
+     * listed sound is playable.
+     */
+    void loadSounds(long timeoutMillis) throws InterruptedException, TimeoutException
+    {
+        plugin.applyPlaybackSettings();
+        plugin.updateLists();
+
+        List<Integer> soundIds = ConfigSnapshot.getIds(config.customSounds());
+        List<Integer> areaSoundIds = ConfigSnapshot.getIds(config.customAreaSounds());
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!loaded(plugin.getSnapshot().getSoundTable(), soundIds) || !loaded(plugin.getSnapshot().getAreaSoundTable(), areaSoundIds))
+        {
+            if (System.currentTimeMillis() > deadline)
+            {
+                throw new TimeoutException("Custom sounds did not load");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Starts the plugin's mixer on the sink instead of a sound card line.
+     */
+    void startMixer(AudioSink sink) throws Exception
+    {
+        mixer().start(sink);
+    }
+
+    @Override
+    public void close() throws Exception
+    {
+        mixer().stop();
+        // The loader threads write the cache index into the folder until they stop
+        plugin.stopLoader();
+
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory.toPath()))
+        {
+            walk.sorted(Comparator.reverseOrder()).forEach(paths::add);
+        }
+        for (Path path : paths)
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static boolean loaded(SoundTable table, List<Integer> soundIds)
+    {
+        for (int soundId : soundIds)
+        {
+            int slot = table.find(soundId);
+            if (slot < 0 || table.getSound(slot) == null)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SoundMixer mixer() throws ReflectiveOperationException
+    {
+        Field field = SoundSwapperPlugin.class.getDeclaredField("mixer");
+        field.setAccessible(true);
+        return (SoundMixer) field.get(plugin);
+    }
+
+    private void inject(String name, Object value)
+    {
+        try
+        {
+            Field field = SoundSwapperPlugin.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(plugin, value);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Unable to inject " + name, e);
+        }
+    }
+}
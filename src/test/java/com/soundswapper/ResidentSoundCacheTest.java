@@ -0,0 +1,197 @@
+package com.soundswapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResidentSoundCacheTest
+{
+    private File directory;
+    private SoundLoader loader;
+    private ResidentSoundCache cache;
+
+    private final List<Sound> admitted = Collections.synchronizedList(new ArrayList<>());
+    private final List<Sound> evicted = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("soundswapper").toFile();
+        SyntheticSounds.write(directory, "a", SyntheticSounds.VOICE_MONO, 0.1f);
+        SyntheticSounds.write(directory, "b", SyntheticSounds.VOICE_MONO, 0.14f);
+        SyntheticSounds.write(directory, "c", SyntheticSounds.VOICE_MONO, 0.12f);
+        Files.copy(new File(directory, "a.wav").toPath(), new File(directory, "copy.wav").toPath());
+
+        loader = new SoundLoader(directory);
+        loader.setCache(false, SampleCache.DEFAULT_MAX_MB, false);
+        cache = new ResidentSoundCache(loader, admitted::add, evicted::add);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        loader.shutdown(10, TimeUnit.SECONDS);
+        try (Stream<Path> walk = Files.walk(directory.toPath()))
+        {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void loadsOnFirstPlay() throws Exception
+    {
+        assertNull(cache.get("a"));
+
+        Sound sound = load("a");
+
+        assertSame(sound, cache.get("a"));
+        assertSame(sound, load("a"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(sound.getNumBytes(), cache.getResidentBytes());
+        assertEquals(Collections.singletonList(sound), admitted);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedOverBudget() throws Exception
+    {
+        Sound a = load("a");
+        Sound b = load("b");
+        cache.setBudget(a.getNumBytes() + b.getNumBytes());
+        cache.get("a");
+
+        Sound c = load("c");
+
+        assertSame(a, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertSame(c, cache.get("c"));
+        assertEquals(Collections.singletonList(b), evicted);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(a.getNumBytes() + c.getNumBytes(), cache.getResidentBytes());
+    }
+
+    @Test
+    public void keepsTheLatestSoundOverBudget() throws Exception
+    {
+        cache.setBudget(1);
+
+        Sound a = load("a");
+        assertSame(a, cache.get("a"));
+
+        load("b");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getResidentCount());
+    }
+
+    @Test
+    public void countsASharedSoundOnce() throws Exception
+    {
+        Sound a = load("a");
+        Sound copy = load("copy");
+
+        assertSame(a, copy);
+        assertEquals(2, cache.getResidentCount());
+        assertEquals(a.getNumBytes(), cache.getResidentBytes());
+        assertEquals(1, admitted.size());
+
+        cache.invalidate("a");
+        assertTrue(evicted.isEmpty());
+
+        cache.invalidate("copy");
+        assertEquals(Collections.singletonList(a), evicted);
+        assertEquals(0, cache.getResidentBytes());
+    }
+
+    @Test
+    public void playsOnlyTheLatestRequestOfALoad() throws Exception
+    {
+        AtomicInteger[] plays = new AtomicInteger[5];
+        for (int i = 0; i < plays.length; i++)
+        {
+            AtomicInteger played = plays[i] = new AtomicInteger();
+            cache.request("a", sound -> played.incrementAndGet());
+        }
+        assertTrue(loader.shutdown(10, TimeUnit.SECONDS));
+
+        int total = 0;
+        for (AtomicInteger played : plays)
+        {
+            assertTrue(played.get() <= 1);
+            total += played.get();
+        }
+        // Requests made once the sound is resident play straight away
+        assertEquals(1 + cache.getHits(), total);
+        assertEquals(1, plays[plays.length - 1].get());
+    }
+
+    @Test
+    public void dropsALoadInvalidatedMeanwhile() throws Exception
+    {
+        cache.request("a", sound -> { });
+        cache.invalidate("a");
+        assertTrue(loader.shutdown(10, TimeUnit.SECONDS));
+
+        assertEquals(0, cache.getResidentCount());
+        assertEquals(admitted.size(), evicted.size());
+    }
+
+    @Test
+    public void doesNotPlayAMissingSound() throws Exception
+    {
+        AtomicInteger played = new AtomicInteger();
+        cache.request("missing", sound -> played.incrementAndGet());
+        assertTrue(loader.shutdown(10, TimeUnit.SECONDS));
+
+        assertEquals(0, played.get());
+        assertEquals(0, cache.getResidentCount());
+    }
+
+    @Test
+    public void clearEvictsEverySoundOnce() throws Exception
+    {
+        Sound a = load("a");
+        load("copy");
+        Sound b = load("b");
+
+        cache.clear();
+
+        assertEquals(2, evicted.size());
+        assertTrue(evicted.contains(a) && evicted.contains(b));
+        assertEquals(0, cache.getResidentBytes());
+        assertNull(cache.get("a"));
+    }
+
+    private Sound load(String name) throws InterruptedException
+    {
+        AtomicReference<Sound> loaded = new AtomicReference<>();
+        CountDownLatch ready = new CountDownLatch(1);
+        cache.request(name, sound ->
+        {
+            loaded.set(sound);
+            ready.countDown();
+        });
+        assertTrue("Timed out", ready.await(10, TimeUnit.SECONDS));
+        assertNotNull(loaded.get());
+        return loaded.get();
+    }
+}
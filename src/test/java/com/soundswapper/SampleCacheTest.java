@@ -0,0 +1,214 @@
+package com.soundswapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SampleCacheTest
+{
+    private static final AudioFormat FORMAT = SoundMixer.FORMAT;
+    private static final byte[] SAMPLES = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private File soundDirectory;
+    private File cacheDirectory;
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        soundDirectory = Files.createTempDirectory("soundswapper").toFile();
+        cacheDirectory = new File(soundDirectory, ".cache");
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        try (Stream<Path> walk = Files.walk(soundDirectory.toPath()))
+        {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void readsBackTheSamples() throws IOException
+    {
+        SampleCache cache = new SampleCache(cacheDirectory, scheduler);
+        File source = source("a", "first");
+
+        cache.put(source, cache.hashOf(source), FORMAT, SAMPLES, 6);
+
+        for (SampleStorage storage : SampleStorage.values())
+        {
+            Sound sound = cache.get(source, storage);
+            assertNotNull(storage.name(), sound);
+            assertTrue(FORMAT.matches(sound.getFormat()));
+            assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, sound.copyBytes());
+        }
+    }
+
+    @Test
+    public void missesAChangedFile() throws IOException
+    {
+        SampleCache cache = new SampleCache(cacheDirectory, scheduler);
+        File source = source("a", "first");
+        cache.put(source, cache.hashOf(source), FORMAT, SAMPLES, SAMPLES.length);
+
+        // Touched but identical is still a hit
+        assertTrue(source.setLastModified(source.lastModified() + 10_000));
+        assertNotNull(cache.get(source, SampleStorage.HEAP));
+
+        source("a", "other");
+        assertTrue(source.setLastModified(source.lastModified() + 20_000));
+        assertNull(cache.get(source, SampleStorage.HEAP));
+    }
+
+    @Test
+    public void identicalFilesShareOneSampleFile() throws IOException
+    {
+        SampleCache cache = new SampleCache(cacheDirectory, scheduler);
+        File a = source("a", "same");
+        File b = source("b", "same");
+
+        cache.put(a, cache.hashOf(a), FORMAT, SAMPLES, SAMPLES.length);
+        cache.put(b, cache.hashOf(b), FORMAT, SAMPLES, SAMPLES.length);
+
+        assertEquals(cache.hashOf(a), cache.hashOf(b));
+        assertEquals(1, sampleFiles().length);
+        assertNotNull(cache.get(b, SampleStorage.HEAP));
+    }
+
+    @Test
+    public void indexOutlivesTheClient() throws IOException
+    {
+        SampleCache cache = new SampleCache(cacheDirectory, scheduler);
+        File source = source("a", "first");
+        cache.put(source, cache.hashOf(source), FORMAT, SAMPLES, SAMPLES.length);
+        cache.save();
+
+        SampleCache restarted = new SampleCache(cacheDirectory, scheduler);
+        assertNotNull(restarted.get(source, SampleStorage.MAPPED));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedOverTheLimit() throws Exception
+    {
+        SampleCache cache = new SampleCache(cacheDirectory, scheduler);
+        File a = source("a", "first");
+        File b = source("b", "second");
+        cache.put(a, cache.hashOf(a), FORMAT, SAMPLES, SAMPLES.length);
+        Thread.sleep(5);
+        cache.put(b, cache.hashOf(b), FORMAT, SAMPLES, SAMPLES.length);
+        File[] written = sampleFiles();
+        long sampleFileSize = written[0].length();
+        // Past the grace period for sample files another client may be writing
+        for (File file : written)
+        {
+            assertTrue(file.setLastModified(System.currentTimeMillis() - 120_000));
+        }
+
+        cache.setMaxBytes(sampleFileSize);
+        cache.save();
+
+        assertNull(cache.get(a, SampleStorage.HEAP));
+        assertNotNull(cache.get(b, SampleStorage.HEAP));
+        assertEquals(1, sampleFiles().length);
+    }
+
+    @Test
+    public void forgetsDeletedSoundFiles() throws IOException
+    {
+        SampleCache cache = new SampleCache(cacheDirectory, scheduler);
+        File source = source("a", "first");
+        cache.put(source, cache.hashOf(source), FORMAT, SAMPLES, SAMPLES.length);
+        assertTrue(source.delete());
+
+        cache.save();
+        source("a", "first");
+
+        assertNull(new SampleCache(cacheDirectory, scheduler).get(source, SampleStorage.HEAP));
+    }
+
+    @Test
+    public void keepsTheEntriesOfEveryClient() throws IOException
+    {
+        SampleCache first = new SampleCache(cacheDirectory, scheduler);
+        SampleCache second = new SampleCache(cacheDirectory, scheduler);
+        File a = source("a", "first");
+        File b = source("b", "second");
+        // Both read the index before the other saved
+        assertNull(first.get(b, SampleStorage.HEAP));
+        assertNull(second.get(a, SampleStorage.HEAP));
+
+        first.put(a, first.hashOf(a), FORMAT, SAMPLES, SAMPLES.length);
+        first.save();
+        second.put(b, second.hashOf(b), FORMAT, SAMPLES, SAMPLES.length);
+        second.save();
+
+        SampleCache third = new SampleCache(cacheDirectory, scheduler);
+        assertNotNull(third.get(a, SampleStorage.HEAP));
+        assertNotNull(third.get(b, SampleStorage.HEAP));
+    }
+
+    @Test
+    public void disabledCacheLeavesTheFolderAlone() throws IOException
+    {
+        SampleCache cache = new SampleCache(cacheDirectory, scheduler);
+        cache.setEnabled(false);
+
+        cache.setMaxBytes(1);
+        cache.save();
+
+        assertFalse(cacheDirectory.exists());
+    }
+
+    @Test
+    public void savesRightAwayOnceTheSchedulerStops() throws IOException
+    {
+        SampleCache cache = new SampleCache(cacheDirectory, scheduler);
+        File source = source("a", "first");
+        cache.put(source, cache.hashOf(source), FORMAT, SAMPLES, SAMPLES.length);
+        File index = new File(cacheDirectory, "index.txt");
+        assertFalse(index.exists());
+
+        cache.flush();
+        assertTrue(index.exists());
+
+        scheduler.shutdown();
+        File other = source("b", "second");
+        cache.put(other, cache.hashOf(other), FORMAT, SAMPLES, SAMPLES.length);
+        assertNotNull(new SampleCache(cacheDirectory, scheduler).get(other, SampleStorage.HEAP));
+    }
+
+    private File source(String name, String content) throws IOException
+    {
+        File file = new File(soundDirectory, name + ".wav");
+        Files.write(file.toPath(), content.getBytes());
+        return file;
+    }
+
+    private File[] sampleFiles()
+    {
+        return cacheDirectory.listFiles((dir, name) -> name.endsWith(".pcm"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.soundswapper;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SampleCompressionTest
+{
+    private static final int FRAMES = 44100;
+
+    @Test
+    public void muLawRoundTripsEveryCode()
+    {
+        for (int code = 0; code < 256; code++)
+        {
+            // Both zero codes decode to 0, which encodes as the positive one
+            if (code == 0x7f)
+            {
+                continue;
+            }
+
+            byte b = (byte) code;
+            assertEquals("code " + code, b, SampleCompression.muLawEncode(SampleCompression.muLawDecode(b)));
+        }
+    }
+
+    @Test
+    public void muLawKeepsASine()
+    {
+        ByteBuffer pcm = sine(0.5);
+
+        byte[] encoded = SampleCompression.MU_LAW.encode(pcm);
+        byte[] decoded = SampleCompression.MU_LAW.decode(ByteBuffer.wrap(encoded));
+
+        assertEquals(FRAMES * 2, encoded.length);
+        assertEquals(pcm.remaining(), decoded.length);
+        assertTrue(SampleCompression.signalToNoise(pcm, decoded) > 30);
+    }
+
+    @Test
+    public void adpcmKeepsASine()
+    {
+        ByteBuffer pcm = sine(0.5);
+
+        byte[] encoded = SampleCompression.IMA_ADPCM.encode(pcm);
+        byte[] decoded = SampleCompression.IMA_ADPCM.decode(ByteBuffer.wrap(encoded));
+
+        assertEquals(FRAMES, encoded.length);
+        assertEquals(pcm.remaining(), decoded.length);
+        assertTrue(SampleCompression.signalToNoise(pcm, decoded) > 20);
+    }
+
+    @Test
+    public void adpcmKeepsSilenceSilent()
+    {
+        byte[] decoded = SampleCompression.IMA_ADPCM.decode(ByteBuffer.wrap(SampleCompression.IMA_ADPCM.encode(ByteBuffer.allocate(4000))));
+
+        assertArrayEquals(new byte[4000], decoded);
+    }
+
+    @Test
+    public void noneCopiesTheSamples()
+    {
+        ByteBuffer pcm = sine(1);
+
+        byte[] decoded = SampleCompression.NONE.decode(ByteBuffer.wrap(SampleCompression.NONE.encode(pcm)));
+
+        assertEquals(Double.POSITIVE_INFINITY, SampleCompression.signalToNoise(pcm, decoded), 0);
+    }
+
+    /**
+     * @return a second of a 440 Hz tone in the mixer format, a little louder on the left
+     */
+    private static ByteBuffer sine(double amplitude)
+    {
+        ByteBuffer pcm = ByteBuffer.allocate(FRAMES * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < FRAMES; i++)
+        {
+            double value = Math.sin(2 * Math.PI * 440 * i / 44100.0) * amplitude * Short.MAX_VALUE;
+            pcm.putShort((short) value);
+            pcm.putShort((short) (value * 0.8));
+        }
+        return pcm.flip();
+    }
+}
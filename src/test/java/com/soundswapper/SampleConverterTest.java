@@ -0,0 +1,120 @@
+package com.soundswapper;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SampleConverterTest
+{
+    @Test
+    public void recognizesTheMixerFormat()
+    {
+        assertTrue(SampleConverter.isMixerFormat(SoundMixer.FORMAT));
+        assertFalse(SampleConverter.isMixerFormat(new AudioFormat(44100f, 16, 1, true, false)));
+        assertFalse(SampleConverter.isMixerFormat(new AudioFormat(44100f, 16, 2, true, true)));
+        assertFalse(SampleConverter.isMixerFormat(new AudioFormat(48000f, 16, 2, true, false)));
+    }
+
+    @Test
+    public void convertsOnlyLinearFormats()
+    {
+        assertTrue(SampleConverter.canConvert(new AudioFormat(11025f, 8, 1, false, false)));
+        assertTrue(SampleConverter.canConvert(new AudioFormat(48000f, 24, 2, true, true)));
+        assertTrue(SampleConverter.canConvert(new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 44100f, 64, 2, 16, 44100f, false)));
+        assertFalse(SampleConverter.canConvert(new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 44100f, 16, 2, 4, 44100f, false)));
+        assertFalse(SampleConverter.canConvert(new AudioFormat(AudioFormat.Encoding.ULAW, 8000f, 8, 1, 1, 8000f, false)));
+        assertFalse(SampleConverter.canConvert(new AudioFormat(8000f, 12, 1, true, false)));
+    }
+
+    @Test
+    public void copiesMonoToBothChannels()
+    {
+        AudioFormat mono = new AudioFormat(44100f, 16, 1, true, false);
+
+        short[] out = convert(mono, samples(ByteOrder.LITTLE_ENDIAN, 1000, -1000));
+
+        assertArrayEquals(new int[]{1000, 1000, -1000, -1000}, toInts(out));
+    }
+
+    @Test
+    public void dropsChannelsPastTheSecond()
+    {
+        AudioFormat surround = new AudioFormat(44100f, 16, 3, true, false);
+
+        short[] out = convert(surround, samples(ByteOrder.LITTLE_ENDIAN, 100, 200, 300, 400, 500, 600));
+
+        assertArrayEquals(new int[]{100, 200, 400, 500}, toInts(out));
+    }
+
+    @Test
+    public void readsUnsignedAndBigEndianSamples()
+    {
+        AudioFormat unsigned = new AudioFormat(44100f, 8, 1, false, false);
+        assertArrayEquals(new int[]{0, 0, -32767, -32767}, toInts(convert(unsigned, new byte[]{(byte) 0x80, 0})));
+
+        AudioFormat bigEndian = new AudioFormat(44100f, 24, 1, true, true);
+        assertArrayEquals(new int[]{16384, 16384, -16383, -16383}, toInts(convert(bigEndian, new byte[]{0x40, 0, 0, (byte) 0xc0, 0, 0})));
+    }
+
+    @Test
+    public void clipsFloatSamples()
+    {
+        AudioFormat floats = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 44100f, 32, 1, 4, 44100f, false);
+        ByteBuffer bytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putFloat(2f).putFloat(-2f);
+
+        short[] out = convert(floats, bytes.array());
+
+        assertArrayEquals(new int[]{32767, 32767, -32768, -32768}, toInts(out));
+    }
+
+    @Test
+    public void interpolatesToTheMixerRate()
+    {
+        AudioFormat half = new AudioFormat(22050f, 16, 1, true, false);
+
+        short[] out = convert(half, samples(ByteOrder.LITTLE_ENDIAN, 0, 1000, 2000));
+
+        assertArrayEquals(new int[]{0, 0, 500, 500, 1000, 1000, 1500, 1500, 2000, 2000}, toInts(out));
+    }
+
+    @Test
+    public void emptyInputGivesNoFrames()
+    {
+        assertEquals(0, SampleConverter.toMixerFormat(new AudioFormat(22050f, 16, 1, true, false), new byte[0], 0).length);
+    }
+
+    private static short[] convert(AudioFormat format, byte[] bytes)
+    {
+        byte[] out = SampleConverter.toMixerFormat(format, bytes, bytes.length);
+        short[] samples = new short[out.length / 2];
+        ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+        return samples;
+    }
+
+    private static byte[] samples(ByteOrder order, int... values)
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 2).order(order);
+        for (int value : values)
+        {
+            bytes.putShort((short) value);
+        }
+        return bytes.array();
+    }
+
+    private static int[] toInts(short[] samples)
+    {
+        int[] ints = new int[samples.length];
+        for (int i = 0; i < samples.length; i++)
+        {
+            ints[i] = samples[i];
+        }
+        return ints;
+    }
+}
@@ -0,0 +1,186 @@
+package com.soundswapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SoundLibraryTest
+{
+    private File directory;
+    private SoundLoader loader;
+    private SoundLibrary library;
+
+    private final List<Sound> added = Collections.synchronizedList(new ArrayList<>());
+    private final List<Sound> removed = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("soundswapper").toFile();
+        SyntheticSounds.write(directory, "1", SyntheticSounds.VOICE_MONO, 0.1f);
+        SyntheticSounds.write(directory, "2", SyntheticSounds.VOICE_MONO, 0.12f);
+        SyntheticSounds.write(directory, "3", SyntheticSounds.VOICE_MONO, 0.14f);
+
+        loader = new SoundLoader(directory);
+        loader.setCache(false, SampleCache.DEFAULT_MAX_MB, false);
+        library = new SoundLibrary(loader, () -> { }, added::add, removed::add);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        loader.shutdown(10, TimeUnit.SECONDS);
+        try (Stream<Path> walk = Files.walk(directory.toPath()))
+        {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void loadsEveryConfiguredId() throws Exception
+    {
+        library.update("1, 2, 5:2, 4");
+
+        await(() -> soundOf(1) != null && soundOf(2) != null && soundOf(5) != null);
+        settle();
+        assertSame(soundOf(2), soundOf(5));
+        assertNull(soundOf(4));
+        assertEquals(3, added.size());
+    }
+
+    @Test
+    public void keepsTheSoundsOfIdsStillConfigured() throws Exception
+    {
+        library.update("1, 2");
+        await(() -> soundOf(1) != null && soundOf(2) != null);
+        Sound first = soundOf(1);
+        Sound second = soundOf(2);
+
+        library.update("2, 3");
+        await(() -> soundOf(3) != null);
+        settle();
+
+        assertNull(soundOf(1));
+        assertSame(second, soundOf(2));
+        assertEquals(Collections.singletonList(first), removed);
+        assertEquals(3, added.size());
+    }
+
+    @Test
+    public void appliesOnlyTheLastOfQuickEdits() throws Exception
+    {
+        library.scheduleUpdate("1");
+        library.scheduleUpdate("1, 2");
+        library.scheduleUpdate("2");
+        Thread.sleep(100);
+        assertNull(soundOf(2));
+
+        await(() -> soundOf(2) != null);
+        settle();
+        assertNull(soundOf(1));
+        assertEquals(1, added.size());
+    }
+
+    @Test
+    public void dropsLoadsOfIdsRemovedMeanwhile() throws Exception
+    {
+        library.update("1");
+        library.update("");
+        settle();
+
+        assertNull(soundOf(1));
+        assertTrue(added.isEmpty());
+    }
+
+    @Test
+    public void keepsTheNewestLoadOfAnId() throws Exception
+    {
+        library.update("1");
+        SyntheticSounds.write(directory, "1", SyntheticSounds.VOICE_MONO, 0.2f);
+        library.reload();
+        settle();
+
+        Sound sound = soundOf(1);
+        assertNotNull(sound);
+        assertTrue(sound.getNumBytes() > loader.load("3").getNumBytes());
+    }
+
+    @Test
+    public void reloadsAChangedFile() throws Exception
+    {
+        library.update("1, 2");
+        await(() -> soundOf(1) != null && soundOf(2) != null);
+        Sound before = soundOf(1);
+        Sound unchanged = soundOf(2);
+
+        SyntheticSounds.write(directory, "1", SyntheticSounds.VOICE_MONO, 0.2f);
+        library.fileChanged("1");
+        await(() -> soundOf(1) != before);
+
+        assertSame(unchanged, soundOf(2));
+        assertTrue(removed.contains(before));
+    }
+
+    @Test
+    public void lazyLibraryOnlyIndexesFiles() throws Exception
+    {
+        library.setLazy(true);
+        library.update("1, 4");
+
+        SoundTable table = table();
+        assertEquals("1", table.getName(table.find(1)));
+        assertNull(table.getSound(table.find(1)));
+        assertEquals(-1, table.find(4));
+        assertTrue(added.isEmpty());
+    }
+
+    private SoundTable table()
+    {
+        SoundTable.Builder builder = new SoundTable.Builder();
+        library.addTo(builder, 100);
+        return builder.build();
+    }
+
+    private Sound soundOf(int soundId)
+    {
+        SoundTable table = table();
+        int slot = table.find(soundId);
+        return slot < 0 ? null : table.getSound(slot);
+    }
+
+    /**
+     * Waits for the loads already queued to finish.
+     */
+    private void settle() throws InterruptedException
+    {
+        assertTrue(loader.shutdown(10, TimeUnit.SECONDS));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean())
+        {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
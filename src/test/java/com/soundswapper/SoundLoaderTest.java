@@ -0,0 +1,141 @@
+package com.soundswapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SoundLoaderTest
+{
+    private File directory;
+    private SoundLoader loader;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("soundswapper").toFile();
+        File original = SyntheticSounds.write(directory, "a", SyntheticSounds.VOICE_MONO, 0.1f);
+        Files.copy(original.toPath(), new File(directory, "copy.wav").toPath());
+
+        // Same length as the original, only the last sample differs
+        File changed = new File(directory, "b.wav");
+        Files.copy(original.toPath(), changed.toPath());
+        try (RandomAccessFile file = new RandomAccessFile(changed, "rw"))
+        {
+            file.seek(file.length() - 1);
+            file.write(0x7f);
+        }
+
+        loader = new SoundLoader(directory);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        loader.shutdown(10, TimeUnit.SECONDS);
+        try (Stream<Path> walk = Files.walk(directory.toPath()))
+        {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void sharesIdenticalFilesWithoutTheCache()
+    {
+        loader.setCache(false, SampleCache.DEFAULT_MAX_MB, false);
+
+        assertShared();
+    }
+
+    @Test
+    public void sharesIdenticalFilesWithTheCache()
+    {
+        loader.setCache(true, SampleCache.DEFAULT_MAX_MB, false);
+
+        assertShared();
+    }
+
+    @Test
+    public void doesNotShareAcrossSettings()
+    {
+        loader.setCache(false, SampleCache.DEFAULT_MAX_MB, false);
+        Sound heap = loader.load("a");
+
+        loader.setStorage(SampleStorage.DIRECT);
+        Sound direct = loader.load("copy");
+
+        assertNotSame(heap, direct);
+        assertTrue(direct.getSamples().isDirect());
+        assertEquals(0, loader.getSharedLoads());
+    }
+
+    @Test
+    public void concurrentLoadsShareOneCopy() throws Exception
+    {
+        loader.setCache(false, SampleCache.DEFAULT_MAX_MB, false);
+        List<CompletableFuture<Sound>> loads = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+        {
+            loads.add(loader.loadAsync(i % 2 == 0 ? "a" : "copy"));
+            loads.add(loader.loadAsync("b"));
+        }
+
+        Set<Sound> sounds = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (CompletableFuture<Sound> load : loads)
+        {
+            sounds.add(load.get(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(2, sounds.size());
+        assertSame(loader.load("a"), loader.load("copy"));
+    }
+
+    @Test
+    public void loaderWithoutSharingDecodesEveryLoad() throws Exception
+    {
+        SoundLoader unshared = new SoundLoader(directory, true, false);
+        unshared.setCache(false, SampleCache.DEFAULT_MAX_MB, false);
+        try
+        {
+            assertNotSame(unshared.load("a"), unshared.load("a"));
+            assertEquals(0, unshared.getSharedLoads());
+        }
+        finally
+        {
+            unshared.shutdown(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private void assertShared()
+    {
+        Sound a = loader.load("a");
+        Sound copy = loader.load("copy");
+        Sound b = loader.load("b");
+
+        assertNotNull(a);
+        assertSame(a, loader.load("a"));
+        assertSame(a, copy);
+        assertNotSame(a, b);
+        assertEquals(2, loader.getSharedLoads());
+    }
+}
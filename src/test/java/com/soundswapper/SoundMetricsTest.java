@@ -0,0 +1,89 @@
+package com.soundswapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SoundMetricsTest
+{
+    @Test
+    public void countsEachActionUnderItsCounter()
+    {
+        SoundMetrics metrics = new SoundMetrics();
+        metrics.count(1, DecisionJournal.CUSTOM);
+        metrics.count(1, DecisionJournal.CONSUMED);
+        metrics.count(1, DecisionJournal.BLACKLISTED);
+        metrics.count(1, DecisionJournal.SWAPPED);
+        metrics.count(1, DecisionJournal.CULLED);
+        metrics.count(1, DecisionJournal.CULLED);
+
+        assertEquals(1, metrics.getCount(1, SoundMetrics.PLAYED));
+        assertEquals(2, metrics.getCount(1, SoundMetrics.CONSUMED));
+        assertEquals(1, metrics.getCount(1, SoundMetrics.SWAPPED));
+        assertEquals(2, metrics.getCount(1, SoundMetrics.CULLED));
+    }
+
+    @Test
+    public void ignoresSoundsLeftAlone()
+    {
+        SoundMetrics metrics = new SoundMetrics();
+        metrics.count(1, DecisionJournal.ALLOWED);
+        metrics.count(1, DecisionJournal.WHITELISTED);
+
+        assertEquals(0, metrics.getSoundIds().length);
+        assertEquals(0, metrics.getCount(1, SoundMetrics.PLAYED));
+    }
+
+    @Test
+    public void keepsEveryCountWhileGrowing()
+    {
+        SoundMetrics metrics = new SoundMetrics();
+        for (int soundId = 0; soundId < 5000; soundId++)
+        {
+            for (int i = 0; i <= soundId % 3; i++)
+            {
+                metrics.count(soundId, DecisionJournal.CUSTOM);
+            }
+            metrics.count(soundId, DecisionJournal.SWAPPED);
+        }
+
+        assertEquals(5000, metrics.getSoundIds().length);
+        for (int soundId = 0; soundId < 5000; soundId++)
+        {
+            assertEquals("id " + soundId, soundId % 3 + 1, metrics.getCount(soundId, SoundMetrics.PLAYED));
+            assertEquals("id " + soundId, 1, metrics.getCount(soundId, SoundMetrics.SWAPPED));
+        }
+        assertEquals(0, metrics.getCount(5000, SoundMetrics.PLAYED));
+    }
+
+    @Test
+    public void listsTheBusiestSoundsFirst()
+    {
+        SoundMetrics metrics = new SoundMetrics();
+        metrics.count(7, DecisionJournal.CUSTOM);
+        metrics.count(3, DecisionJournal.CUSTOM);
+        metrics.count(9, DecisionJournal.CULLED);
+        metrics.count(9, DecisionJournal.CULLED);
+        metrics.count(5, DecisionJournal.SWAPPED);
+        metrics.count(5, DecisionJournal.CONSUMED);
+        metrics.count(5, DecisionJournal.CUSTOM);
+
+        assertArrayEquals(new int[]{5, 9, 3, 7}, metrics.getSoundIds());
+    }
+
+    @Test
+    public void resetForgetsTheCounts()
+    {
+        SoundMetrics metrics = new SoundMetrics();
+        for (int soundId = 0; soundId < 100; soundId++)
+        {
+            metrics.count(soundId, DecisionJournal.CUSTOM);
+        }
+
+        metrics.reset();
+
+        assertEquals(0, metrics.getSoundIds().length);
+        assertEquals(0, metrics.getCount(1, SoundMetrics.PLAYED));
+    }
+}
@@ -0,0 +1,156 @@
+package com.soundswapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SoundPackTest
+{
+    private File directory;
+
+    // The names of the files decoded, a file named bad cannot be decoded
+    private final List<String> decoded = new ArrayList<>();
+    private final SoundPack.Decoder decoder = soundFile ->
+    {
+        decoded.add(soundFile.getName());
+        if (soundFile.getName().equals("bad.wav"))
+        {
+            return null;
+        }
+
+        try
+        {
+            return new Sound(ByteBuffer.wrap(Files.readAllBytes(soundFile.toPath())), SoundMixer.FORMAT);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("soundswapper").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> walk = Files.walk(directory.toPath()))
+        {
+            walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void packsEveryDecodableSound() throws IOException
+    {
+        write("a", "first sound");
+        write("b", "second");
+        write("bad", "broken");
+
+        assertEquals(2, SoundPack.build(directory, decoder));
+        SoundPack pack = SoundPack.open(SoundPack.latest(directory));
+
+        assertEquals(2, pack.size());
+        assertArrayEquals(bytes("first sound"), pack.get("a").copyBytes());
+        assertArrayEquals(bytes("second"), pack.get("b").copyBytes());
+        assertTrue(SoundMixer.FORMAT.matches(pack.get("a").getFormat()));
+        assertFalse(pack.contains("bad"));
+    }
+
+    @Test
+    public void identicalFilesShareTheirSamples() throws IOException
+    {
+        write("a", "same content");
+        write("copy", "same content");
+        write("b", "other content");
+
+        assertEquals(3, SoundPack.build(directory, decoder));
+        SoundPack pack = SoundPack.open(SoundPack.latest(directory));
+
+        assertEquals(2, decoded.size());
+        assertSame(pack.get("a"), pack.get("copy"));
+        assertNotSame(pack.get("a"), pack.get("b"));
+        assertArrayEquals(bytes("other content"), pack.get("b").copyBytes());
+    }
+
+    @Test
+    public void changedFileIsNotServedFromThePack() throws IOException
+    {
+        File a = write("a", "first sound");
+        SoundPack.build(directory, decoder);
+        SoundPack pack = SoundPack.open(SoundPack.latest(directory));
+
+        assertTrue(a.setLastModified(System.currentTimeMillis() + 60_000));
+
+        assertNull(pack.get("a"));
+        assertTrue(pack.contains("a"));
+    }
+
+    @Test
+    public void everyBuildWritesANewPack() throws IOException
+    {
+        write("a", "first sound");
+        SoundPack.build(directory, decoder);
+        File first = SoundPack.latest(directory);
+        SoundPack inUse = SoundPack.open(first);
+
+        SoundPack.build(directory, decoder);
+        File second = SoundPack.latest(directory);
+
+        assertNotEquals(first, second);
+        assertArrayEquals(bytes("first sound"), inUse.get("a").copyBytes());
+
+        SoundPack.deleteOutdated(directory);
+        // Windows keeps a mapped pack until its mapping is collected
+        if (!System.getProperty("os.name").startsWith("Windows"))
+        {
+            assertFalse(first.exists());
+        }
+        assertTrue(second.exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAFileThatIsNotAPack() throws IOException
+    {
+        File pack = new File(directory, SoundPack.FILE_PREFIX + "-1" + SoundPack.FILE_EXTENSION);
+        Files.write(pack.toPath(), bytes("not a sound pack"));
+
+        SoundPack.open(pack);
+    }
+
+    private File write(String name, String content) throws IOException
+    {
+        File file = new File(directory, name + ".wav");
+        Files.write(file.toPath(), bytes(content));
+        return file;
+    }
+
+    private static byte[] bytes(String content)
+    {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
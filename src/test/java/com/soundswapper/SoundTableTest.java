@@ -0,0 +1,85 @@
+package com.soundswapper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SoundTableTest
+{
+    @Test
+    public void findsEveryIdAndNothingElse()
+    {
+        SoundTable.Builder builder = new SoundTable.Builder();
+        for (int soundId = 0; soundId < 3000; soundId += 3)
+        {
+            builder.flag(soundId, SoundTable.BLACKLISTED);
+        }
+        SoundTable table = builder.build();
+
+        assertEquals(1000, table.size());
+        for (int soundId = 0; soundId < 3000; soundId++)
+        {
+            int slot = table.find(soundId);
+            if (soundId % 3 == 0)
+            {
+                assertTrue("missing " + soundId, slot >= 0);
+                assertEquals(SoundTable.BLACKLISTED, table.getFlags(slot));
+            }
+            else
+            {
+                assertEquals(-1, slot);
+            }
+        }
+    }
+
+    @Test
+    public void emptyTableHasNoRules()
+    {
+        assertEquals(0, SoundTable.EMPTY.size());
+        assertEquals(-1, SoundTable.EMPTY.find(0));
+        assertEquals(0, SoundTable.EMPTY.getFlags(-1));
+    }
+
+    @Test
+    public void firstSwapOfAnIdWins()
+    {
+        SoundTable table = new SoundTable.Builder()
+                .nativeSwaps(Arrays.asList(5, 6, 5), Arrays.asList(50, 60, 55))
+                .build();
+
+        assertEquals(50, table.getReplacement(table.find(5)));
+        assertEquals(60, table.getReplacement(table.find(6)));
+    }
+
+    @Test
+    public void swapsWithoutReplacementAreIgnored()
+    {
+        SoundTable table = new SoundTable.Builder()
+                .nativeSwaps(Arrays.asList(5, 6), Arrays.asList(50))
+                .build();
+
+        assertEquals(SoundTable.NATIVE_SWAP, table.getFlags(table.find(5)));
+        assertEquals(-1, table.find(6));
+    }
+
+    @Test
+    public void rulesForOneIdCombine()
+    {
+        SoundTable table = new SoundTable.Builder()
+                .flagAll(Arrays.asList(7, 8), SoundTable.WHITELISTED)
+                .custom(7, null, "7", 40)
+                .build();
+
+        int slot = table.find(7);
+        assertEquals(SoundTable.WHITELISTED | SoundTable.CUSTOM, table.getFlags(slot));
+        assertEquals(40, table.getVolume(slot));
+        assertEquals(SoundMixer.gain(40), table.getGain(slot), 0f);
+        assertEquals("7", table.getName(slot));
+        assertNull(table.getSound(slot));
+        assertEquals(SoundTable.WHITELISTED, table.getFlags(table.find(8)));
+    }
+}
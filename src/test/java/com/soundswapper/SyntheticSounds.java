@@ -0,0 +1,87 @@
+package com.soundswapper;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes wav files of a sine tone in any PCM or mu-law format, standing in for custom sounds.
+ */
+final class SyntheticSounds
+{
+    static final AudioFormat CD_STEREO = SoundMixer.FORMAT;
+    static final AudioFormat VOICE_MONO = new AudioFormat(22050f, 16, 1, true, false);
+    static final AudioFormat STUDIO_24_BIT = new AudioFormat(48000f, 24, 2, true, false);
+    static final AudioFormat RETRO_8_BIT = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 11025f, 8, 1, 1, 11025f, false);
+    static final AudioFormat TELEPHONE_MU_LAW = new AudioFormat(AudioFormat.Encoding.ULAW, 8000f, 8, 1, 1, 8000f, false);
+
+    private SyntheticSounds()
+    {
+    }
+
+    /**
+     * @param name one of the formats above, by field name
+     */
+    static AudioFormat format(String name)
+    {
+        switch (name)
+        {
+            case "CD_STEREO":
+                return CD_STEREO;
+            case "VOICE_MONO":
+                return VOICE_MONO;
+            case "STUDIO_24_BIT":
+                return STUDIO_24_BIT;
+            case "RETRO_8_BIT":
+                return RETRO_8_BIT;
+            case "TELEPHONE_MU_LAW":
+                return TELEPHONE_MU_LAW;
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    static File write(File directory, String name, AudioFormat format, float seconds) throws IOException
+    {
+        boolean muLaw = AudioFormat.Encoding.ULAW.equals(format.getEncoding());
+        AudioFormat pcm = muLaw ? new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false) : format;
+
+        int frames = (int) (pcm.getSampleRate() * seconds);
+        int bytesPerSample = pcm.getSampleSizeInBits() / 8;
+        boolean unsigned = AudioFormat.Encoding.PCM_UNSIGNED.equals(pcm.getEncoding());
+        byte[] bytes = new byte[frames * pcm.getChannels() * bytesPerSample];
+
+        int offset = 0;
+        for (int frame = 0; frame < frames; frame++)
+        {
+            double value = 0.5 * Math.sin(2 * Math.PI * 440 * frame / pcm.getSampleRate());
+            long sample = (long) (value * ((1L << (pcm.getSampleSizeInBits() - 1)) - 1));
+            if (unsigned)
+            {
+                sample += 1L << (pcm.getSampleSizeInBits() - 1);
+            }
+
+            for (int channel = 0; channel < pcm.getChannels(); channel++)
+            {
+                for (int i = 0; i < bytesPerSample; i++)
+                {
+                    int shift = pcm.isBigEndian() ? (bytesPerSample - 1 - i) * 8 : i * 8;
+                    bytes[offset++] = (byte) (sample >> shift);
+                }
+            }
+        }
+
+        File file = new File(directory, name + ".wav");
+        AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(bytes), pcm, frames);
+        if (muLaw)
+        {
+            stream = AudioSystem.getAudioInputStream(format, stream);
+        }
+        AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+        return file;
+    }
+}
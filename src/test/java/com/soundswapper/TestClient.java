@@ -0,0 +1,125 @@
+package com.soundswapper;
+
+import net.runelite.api.AmbientSoundEffect;
+import net.runelite.api.Client;
+import net.runelite.api.GameState;
+import net.runelite.api.Player;
+import net.runelite.api.Preferences;
+import net.runelite.api.coords.LocalPoint;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+
+/**
+ * The parts of {@link Client} the plugin uses while handling sound events: a logged in local player
+ * standing on a fixed scene tile, volume preferences and a count of the sounds the plugin plays
+ * through the client. Every other method returns a default value.
+ */
+final class TestClient
+{
+    static final int VOLUME = 127;
+
+    private final Client client;
+    private final ArrayDeque<AmbientSoundEffect> ambientSounds = new ArrayDeque<>();
+
+    private volatile LocalPoint location;
+    private long playedSoundEffects;
+
+    TestClient(int sceneX, int sceneY)
+    {
+        setScenePosition(sceneX, sceneY);
+
+        Preferences preferences = (Preferences) Proxy.newProxyInstance(Preferences.class.getClassLoader(),
+                new Class<?>[]{Preferences.class}, (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getSoundEffectVolume":
+                        case "getAreaSoundEffectVolume":
+                            return VOLUME;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+
+        Player player = (Player) Proxy.newProxyInstance(Player.class.getClassLoader(),
+                new Class<?>[]{Player.class}, (proxy, method, args) ->
+                        "getLocalLocation".equals(method.getName()) ? location : defaultValue(method.getReturnType()));
+
+        client = (Client) Proxy.newProxyInstance(Client.class.getClassLoader(),
+                new Class<?>[]{Client.class}, (proxy, method, args) ->
+                {
+                    switch (method.getName())
+                    {
+                        case "getLocalPlayer":
+                            return player;
+                        case "getPreferences":
+                            return preferences;
+                        case "getGameState":
+                            return GameState.LOGGED_IN;
+                        case "getAmbientSoundEffects":
+                            return ambientSounds;
+                        case "isClientThread":
+                            return true;
+                        case "playSoundEffect":
+                            playedSoundEffects++;
+                            return null;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    Client getClient()
+    {
+        return client;
+    }
+
+    void setScenePosition(int sceneX, int sceneY)
+    {
+        // Local coordinates are 128 units per tile, measured from the tile's corner
+        location = new LocalPoint((sceneX << 7) + 64, (sceneY << 7) + 64);
+    }
+
+    long getPlayedSoundEffects()
+    {
+        return playedSoundEffects;
+    }
+
+    static Object defaultValue(Class<?> type)
+    {
+        if (!type.isPrimitive() || type == void.class)
+        {
+            return null;
+        }
+        if (type == boolean.class)
+        {
+            return false;
+        }
+        if (type == char.class)
+        {
+            return '\0';
+        }
+        if (type == long.class)
+        {
+            return 0L;
+        }
+        if (type == float.class)
+        {
+            return 0f;
+        }
+        if (type == double.class)
+        {
+            return 0d;
+        }
+        if (type == byte.class)
+        {
+            return (byte) 0;
+        }
+        if (type == short.class)
+        {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,55 @@
+package com.soundswapper;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link SoundSwapperConfig} without a config manager: items return the value set here, or their
+ * default otherwise.
+ */
+final class TestConfig implements InvocationHandler
+{
+    private final Map<String, Object> values = new HashMap<>();
+
+    static SoundSwapperConfig create(Map<String, Object> values)
+    {
+        TestConfig handler = new TestConfig();
+        handler.values.putAll(values);
+        return (SoundSwapperConfig) Proxy.newProxyInstance(SoundSwapperConfig.class.getClassLoader(),
+                new Class<?>[]{SoundSwapperConfig.class}, handler);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        String name = method.getName();
+        if (values.containsKey(name))
+        {
+            return values.get(name);
+        }
+
+        if (method.isDefault())
+        {
+            return MethodHandles.privateLookupIn(SoundSwapperConfig.class, MethodHandles.lookup())
+                    .unreflectSpecial(method, SoundSwapperConfig.class)
+                    .bindTo(proxy)
+                    .invokeWithArguments(args == null ? new Object[0] : args);
+        }
+
+        switch (name)
+        {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "TestConfig" + values;
+            default:
+                return TestClient.defaultValue(method.getReturnType());
+        }
+    }
+}
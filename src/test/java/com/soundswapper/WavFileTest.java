@@ -0,0 +1,206 @@
+package com.soundswapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WavFileTest
+{
+    private static final byte[] SAMPLES = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("soundswapper", ".wav");
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void readsPcm() throws IOException
+    {
+        WavFile wav = parse(riff(fmt(1, 2, 44100, 16), chunk("data", SAMPLES)));
+
+        AudioFormat format = wav.getFormat();
+        assertEquals(AudioFormat.Encoding.PCM_SIGNED, format.getEncoding());
+        assertEquals(2, format.getChannels());
+        assertEquals(44100f, format.getSampleRate(), 0f);
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(2, wav.getFrameLength());
+        assertArrayEquals(SAMPLES, read(wav));
+    }
+
+    @Test
+    public void eightBitIsUnsigned() throws IOException
+    {
+        WavFile wav = parse(riff(fmt(1, 1, 8000, 8), chunk("data", SAMPLES)));
+
+        assertEquals(AudioFormat.Encoding.PCM_UNSIGNED, wav.getFormat().getEncoding());
+        assertEquals(8, wav.getFrameLength());
+    }
+
+    @Test
+    public void skipsThePadByteOfOddChunks() throws IOException
+    {
+        WavFile wav = parse(riff(chunk("LIST", new byte[]{9, 9, 9}), fmt(1, 2, 44100, 16), chunk("data", SAMPLES)));
+
+        assertArrayEquals(SAMPLES, read(wav));
+    }
+
+    @Test
+    public void truncatedDataRunsToTheEnd() throws IOException
+    {
+        byte[] data = chunk("data", SAMPLES);
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(4, 1000);
+        WavFile wav = parse(riff(fmt(1, 2, 44100, 16), data));
+
+        assertEquals(SAMPLES.length, wav.getDataLength());
+        assertArrayEquals(SAMPLES, read(wav));
+    }
+
+    @Test
+    public void unsetDataLengthRunsToTheEnd() throws IOException
+    {
+        byte[] data = chunk("data", SAMPLES);
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(4, -1);
+        WavFile wav = parse(riff(fmt(1, 2, 44100, 16), data));
+
+        assertArrayEquals(SAMPLES, read(wav));
+    }
+
+    @Test
+    public void dropsAPartialLastFrame() throws IOException
+    {
+        WavFile wav = parse(riff(fmt(1, 2, 44100, 16), chunk("data", new byte[]{1, 2, 3, 4, 5, 6})));
+
+        assertEquals(4, wav.getDataLength());
+        assertEquals(1, wav.getFrameLength());
+    }
+
+    @Test
+    public void readsExtensibleFloat() throws IOException
+    {
+        WavFile wav = parse(riff(extensible(3, 2, 48000, 32), chunk("data", SAMPLES)));
+
+        assertEquals(AudioFormat.Encoding.PCM_FLOAT, wav.getFormat().getEncoding());
+        assertEquals(32, wav.getFormat().getSampleSizeInBits());
+        assertEquals(1, wav.getFrameLength());
+    }
+
+    @Test
+    public void readsExtensiblePcm() throws IOException
+    {
+        WavFile wav = parse(riff(extensible(1, 2, 48000, 24), chunk("data", new byte[12])));
+
+        assertEquals(AudioFormat.Encoding.PCM_SIGNED, wav.getFormat().getEncoding());
+        assertEquals(24, wav.getFormat().getSampleSizeInBits());
+        assertEquals(2, wav.getFrameLength());
+    }
+
+    @Test
+    public void leavesOtherEncodingsToAudioSystem() throws IOException
+    {
+        // mu-law
+        assertNull(parse(riff(fmt(7, 1, 8000, 8), chunk("data", SAMPLES))));
+        // extensible IMA ADPCM
+        assertNull(parse(riff(extensible(0x11, 1, 8000, 8), chunk("data", SAMPLES))));
+        // 12 bit PCM
+        assertNull(parse(riff(fmt(1, 1, 8000, 12), chunk("data", SAMPLES))));
+    }
+
+    @Test
+    public void rejectsMalformedFiles() throws IOException
+    {
+        assertNull(parse("not a wav file at all".getBytes(StandardCharsets.US_ASCII)));
+        assertNull(parse(riff(chunk("data", SAMPLES), fmt(1, 2, 44100, 16))));
+        assertNull(parse(riff(fmt(1, 2, 44100, 16))));
+        assertNull(parse(new byte[0]));
+    }
+
+    private WavFile parse(byte[] bytes) throws IOException
+    {
+        Files.write(file.toPath(), bytes);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            return WavFile.parse(channel);
+        }
+    }
+
+    private byte[] read(WavFile wav) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            return wav.readData(channel);
+        }
+    }
+
+    private static byte[] riff(byte[]... chunks)
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes("WAVE".getBytes(StandardCharsets.US_ASCII));
+        for (byte[] chunk : chunks)
+        {
+            body.writeBytes(chunk);
+        }
+        return chunk("RIFF", body.toByteArray());
+    }
+
+    private static byte[] fmt(int tag, int channels, int sampleRate, int bits)
+    {
+        return chunk("fmt ", header(16, tag, channels, sampleRate, bits).array());
+    }
+
+    private static byte[] extensible(int subFormat, int channels, int sampleRate, int bits)
+    {
+        ByteBuffer fmt = header(40, 0xfffe, channels, sampleRate, bits);
+        fmt.putShort((short) 22);
+        fmt.putShort((short) bits);
+        fmt.putInt(channels == 1 ? 4 : 3);
+        // The format tag followed by the rest of the KSDATAFORMAT_SUBTYPE GUID
+        fmt.putShort((short) subFormat);
+        fmt.put(new byte[]{0, 0, 0, 0, 0x10, 0, (byte) 0x80, 0, 0, (byte) 0xaa, 0, 0x38, (byte) 0x9b, 0x71});
+        return chunk("fmt ", fmt.array());
+    }
+
+    private static ByteBuffer header(int size, int tag, int channels, int sampleRate, int bits)
+    {
+        int blockAlign = channels * bits / 8;
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort((short) tag)
+                .putShort((short) channels)
+                .putInt(sampleRate)
+                .putInt(sampleRate * blockAlign)
+                .putShort((short) blockAlign)
+                .putShort((short) bits);
+    }
+
+    private static byte[] chunk(String id, byte[] body)
+    {
+        ByteBuffer chunk = ByteBuffer.allocate(8 + body.length + (body.length & 1)).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put(id.getBytes(StandardCharsets.US_ASCII));
+        chunk.putInt(body.length);
+        chunk.put(body);
+        return chunk.array();
+    }
+}